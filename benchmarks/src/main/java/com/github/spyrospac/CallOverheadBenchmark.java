@@ -0,0 +1,101 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of a call into the libraries, without the minification itself: the library function returns its code.
+ * A script evaluated per call, the compiled command executed on a scope per call (the previous call path),
+ * and the function called directly with the Java arguments, as {@link JavaScriptEngine#call} does.
+ * The state is per thread, as the Rhino contexts are bound to the thread that entered them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CallOverheadBenchmark {
+    private static final String CODE = Corpus.javaScript(1024, 0);
+
+    private Context cx;
+    private ScriptableObject sharedScope;
+    private Script command;
+    private Function function;
+
+    @Setup
+    public void setUp() {
+        cx = Context.enter();
+        cx.setOptimizationLevel(9);
+        sharedScope = cx.initStandardObjects();
+        cx.evaluateString(sharedScope, "identity = function (code, mangle) { return code; };", "identity.js", 1, null);
+        command = cx.compileString("identity(String(data), String(mangle));", "<cmd>", 1, null);
+        function = (Function) ScriptableObject.getProperty(sharedScope, "identity");
+        sharedScope.sealObject();
+    }
+
+    @TearDown
+    public void tearDown() {
+        Context.exit();
+    }
+
+    @Benchmark
+    public Object evaluatePerCall() {
+        Scriptable scope = newScope();
+        ScriptableObject.putProperty(scope, "data", CODE);
+        ScriptableObject.putProperty(scope, "mangle", "true");
+        return cx.evaluateString(scope, "identity(String(data), String(mangle));", "<cmd>", 1, null).toString();
+    }
+
+    @Benchmark
+    public Object scopePerCall() {
+        Scriptable scope = newScope();
+        ScriptableObject.putProperty(scope, "data", CODE);
+        ScriptableObject.putProperty(scope, "mangle", "true");
+        return command.exec(cx, scope).toString();
+    }
+
+    @Benchmark
+    public Object directCall() {
+        return function.call(cx, sharedScope, sharedScope, new Object[]{CODE, true}).toString();
+    }
+
+    private Scriptable newScope() {
+        Scriptable scope = cx.newObject(sharedScope);
+        scope.setPrototype(sharedScope);
+        scope.setParentScope(null);
+        return scope;
+    }
+}
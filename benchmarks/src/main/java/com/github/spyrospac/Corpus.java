@@ -0,0 +1,94 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generates JavaScript and CSS sources of a given size for the benchmarks.
+ * The sources are made of distinct functions and rules, so that the minifiers cannot shortcut them.
+ */
+final class Corpus {
+
+    private Corpus() {
+    }
+
+    /**
+     * Generates JavaScript code of about the given size.
+     *
+     * @param size the size in bytes
+     * @param seed distinguishes the names of different files
+     * @return the source
+     */
+    static String javaScript(int size, int seed) {
+        StringBuilder code = new StringBuilder(size + 512);
+        for (int i = 0; code.length() < size; i++) {
+            String name = "module" + seed + "_" + i;
+            code.append("function ").append(name).append("(items, factor) {\n")
+                    .append("    // sums the weighted items\n")
+                    .append("    var total = 0;\n")
+                    .append("    for (var index = 0; index < items.length; index++) {\n")
+                    .append("        total += items[index] * factor + ").append(i).append(";\n")
+                    .append("    }\n")
+                    .append("    return { name: \"").append(name).append("\", total: total };\n")
+                    .append("}\n");
+        }
+        return code.toString();
+    }
+
+    /**
+     * Generates CSS of about the given size.
+     *
+     * @param size the size in bytes
+     * @param seed distinguishes the selectors of different files
+     * @return the source
+     */
+    static String css(int size, int seed) {
+        StringBuilder code = new StringBuilder(size + 512);
+        for (int i = 0; code.length() < size; i++) {
+            code.append("/* block ").append(i).append(" */\n")
+                    .append("div#page").append(seed).append(" .item-").append(i).append(" {\n")
+                    .append("    background-color: #FFFFFF;\n")
+                    .append("    border-bottom: 1px solid #EBAD14;\n")
+                    .append("    margin: 0px 0px 0px 0px;\n")
+                    .append("    color: #").append(String.format("%06X", (i * 7919) & 0xFFFFFF)).append(";\n")
+                    .append("}\n");
+        }
+        return code.toString();
+    }
+
+    /**
+     * Writes a corpus of JavaScript and CSS files.
+     *
+     * @param directory the directory to create the files in
+     * @param fileCount the number of files of each type
+     * @param fileSize  the size of each file in bytes
+     * @throws IOException
+     */
+    static void write(File directory, int fileCount, int fileSize) throws IOException {
+        for (int i = 0; i < fileCount; i++) {
+            File dir = new File(directory, "module" + (i % 10));
+            FileUtils.write(new File(dir, "script" + i + ".js"), javaScript(fileSize, i), StandardCharsets.UTF_8);
+            FileUtils.write(new File(dir, "style" + i + ".css"), css(fileSize, i), StandardCharsets.UTF_8);
+        }
+    }
+}
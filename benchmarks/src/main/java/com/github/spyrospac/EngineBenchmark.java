@@ -0,0 +1,76 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.maven.plugin.logging.Log;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Start up costs of the minifiers: evaluating the library scripts into a new engine,
+ * and creating the per thread context on an existing engine.
+ * With an optimization level of -1 the libraries are parsed from source, otherwise the precompiled classes are used.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EngineBenchmark {
+    private final Log log = new QuietLog();
+
+    @Param({"js", "css"})
+    private String type;
+
+    @Param({"-1", "9"})
+    private int optimizationLevel;
+
+    private JavaScriptEngine engine;
+
+    @Setup
+    public void setUp() {
+        engine = libraryEvaluation();
+    }
+
+    @Benchmark
+    public JavaScriptEngine libraryEvaluation() {
+        return "js".equals(type)
+                ? UglifyJavaScriptContext.compileEngine(log, optimizationLevel, "uglifyjs.js", "uglifyJavascript.js")
+                : CleanCSSJavaScriptContext.compileEngine(log, optimizationLevel, "clean-css-v4.2.1.js", "minifyCSS.js");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void contextCreation() {
+        Minifier minifier = "js".equals(type)
+                ? new UglifyJavaScriptContext(engine) : new CleanCSSJavaScriptContext(engine);
+        minifier.close();
+    }
+}
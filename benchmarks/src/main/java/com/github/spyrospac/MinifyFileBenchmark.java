@@ -0,0 +1,100 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minification of a single file on a warm engine, through invokeUglifyJSFunctionOnFile and
+ * invokeCleanCssFunctionOnFile, including the read of the file.
+ * The state is per thread, as the Rhino contexts are bound to the thread that entered them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MinifyFileBenchmark {
+    private final Log log = new QuietLog();
+
+    @Param({"1024", "16384", "131072"})
+    private int fileSize;
+
+    @Param({"true", "false"})
+    private boolean mangle;
+
+    private File directory;
+    private File script;
+    private File style;
+    private UglifyJavaScriptContext jsContext;
+    private CleanCSSJavaScriptContext cssContext;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("uglify-benchmark").toFile();
+        script = new File(directory, "script.js");
+        style = new File(directory, "style.css");
+        FileUtils.write(script, Corpus.javaScript(fileSize, 0), StandardCharsets.UTF_8);
+        FileUtils.write(style, Corpus.css(fileSize, 0), StandardCharsets.UTF_8);
+
+        jsContext = new UglifyJavaScriptContext(
+                UglifyJavaScriptContext.compileEngine(log, 9, "uglifyjs.js", "uglifyJavascript.js"));
+        cssContext = new CleanCSSJavaScriptContext(
+                CleanCSSJavaScriptContext.compileEngine(log, 9, "clean-css-v4.2.1.js", "minifyCSS.js"));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        jsContext.close();
+        cssContext.close();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public String uglifyJavaScript() throws IOException {
+        return jsContext.invokeUglifyJSFunctionOnFile(script, mangle);
+    }
+
+    /**
+     * CSSO has no mangle option, the results of both mangle values are the same.
+     */
+    @Benchmark
+    public String minifyCss() throws IOException {
+        return cssContext.invokeCleanCssFunctionOnFile(style);
+    }
+}
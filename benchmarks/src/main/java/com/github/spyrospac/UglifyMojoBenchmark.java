@@ -0,0 +1,105 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.shared.model.fileset.FileSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole uglify() loop of the mojo over a generated corpus of JavaScript and CSS files: scanning,
+ * reading, minifying and writing. The engines are compiled in the first warm up iteration and then reused,
+ * as within one plugin execution; no cache or build manifest is used, so every file is minified.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UglifyMojoBenchmark {
+
+    @Param({"10", "100"})
+    private int fileCount;
+
+    @Param({"1024", "16384"})
+    private int fileSize;
+
+    @Param({"true", "false"})
+    private boolean mangle;
+
+    @Param({"1", "4"})
+    private int threads;
+
+    private File directory;
+    private UglifyMojo mojo;
+
+    @Setup
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("uglify-benchmark").toFile();
+        File sourceDirectory = new File(directory, "sources");
+        Corpus.write(sourceDirectory, fileCount, fileSize);
+
+        FileSet sources = new FileSet();
+        sources.setDirectory(sourceDirectory.getPath());
+
+        mojo = new UglifyMojo();
+        mojo.setLog(new QuietLog());
+        set("sources", sources);
+        set("outputDirectory", new File(directory, "output"));
+        set("mangle", mangle);
+        set("threads", threads);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public void uglify() throws MojoExecutionException {
+        mojo.execute();
+    }
+
+    /**
+     * Sets a parameter of the mojo, as Maven would inject it.
+     */
+    private void set(String name, Object value) throws ReflectiveOperationException {
+        Field field = UglifyMojo.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(mojo, value);
+    }
+}
@@ -0,0 +1,209 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Minified files named after the hash of their content, e.g. app.3f2c1b9e.min.js, so that they can be served with
+ * far-future cache headers, and the JSON manifest mapping their logical names to the hashed ones for server-side
+ * templates, e.g. {"js/app.min.js":"js/app.3f2c1b9e.min.js"}. Names are relative to the root directory; a file
+ * outside of it, e.g. a bundle written elsewhere, is recorded with its absolute path, and a warning is logged.
+ * The manifest of the previous run is loaded, so that unchanged files keep their names, and a hashed file replaced
+ * by a newer one is deleted with its compressed copies. Source maps keep the logical name of their minified file.
+ */
+final class AssetManifest {
+    /**
+     * Number of hexadecimal digits of the hash in the names.
+     */
+    static final int HASH_LENGTH = 8;
+
+    private static final Pattern HASHED_NAME =
+            Pattern.compile("(.*)\\.[0-9a-f]{" + HASH_LENGTH + "}((?:\\.min)?\\.(?:js|css))");
+    private static final Pattern MEMBER = Pattern.compile("\\s*[{,]?\\s*\"((?:[^\"\\\\]|\\\\.)*)\"\\s*:\\s*"
+            + "\"((?:[^\"\\\\]|\\\\.)*)\"\\s*}?\\s*");
+
+    private final File root;
+    private final Log log;
+    private final Map<String, String> assets = new TreeMap<>();
+
+    private AssetManifest(final File root, final Log log) {
+        this.root = root;
+        this.log = log;
+    }
+
+    /**
+     * Loads the manifest of the previous run. A missing or unreadable manifest gives an empty one,
+     * so that the hashed files of the previous run are not deleted when they are replaced.
+     *
+     * @param file
+     * @param root the directory the names are relative to
+     * @param log
+     * @return the {@link AssetManifest}
+     */
+    static AssetManifest load(final File file, final File root, final Log log) {
+        AssetManifest manifest = new AssetManifest(root, log);
+        if (!file.isFile()) {
+            return manifest;
+        }
+
+        try {
+            String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            Matcher matcher = MEMBER.matcher(json);
+            int end = 0;
+            while (matcher.lookingAt()) {
+                manifest.assets.put(JsonWriter.unescape(matcher.group(1)), JsonWriter.unescape(matcher.group(2)));
+                end = matcher.end();
+                matcher.region(end, json.length());
+            }
+            if (json.substring(end).trim().length() > (end == 0 ? 2 : 0)) {
+                throw new IllegalArgumentException("Unexpected content at " + end);
+            }
+        } catch (IllegalArgumentException e) {
+            log.warn("Could not parse asset manifest " + file.getPath() + ", it is written again.");
+            manifest.assets.clear();
+        } catch (IOException e) {
+            log.warn("Could not read asset manifest " + file.getPath() + ", it is written again.", e);
+        }
+        return manifest;
+    }
+
+    /**
+     * Inserts the hash in the name of a minified file, before its ".min.js", ".min.css", ".js" or ".css" suffix.
+     *
+     * @param name the name of the minified file
+     * @param hash the SHA-256 of the file
+     * @return the hashed name
+     */
+    static String hashedName(final String name, final String hash) {
+        String suffix = name.endsWith(".min.js") ? ".min.js" : name.endsWith(".min.css") ? ".min.css"
+                : name.substring(name.lastIndexOf('.'));
+        return name.substring(0, name.length() - suffix.length()) + "." + hash.substring(0, HASH_LENGTH) + suffix;
+    }
+
+    /**
+     * Renames a written minified file after the hash of its content and records its hashed name.
+     * If the hashed file already has this content, it is kept as it is, with its modification time, and the written
+     * file is deleted. The hashed file it replaces, if any, is deleted with its compressed copies.
+     *
+     * @param outputFile the minified file, with its logical name
+     * @return the hashed file
+     * @throws IOException
+     */
+    File publish(final File outputFile) throws IOException {
+        String hash = TextFiles.hash(outputFile);
+        File hashed = new File(outputFile.getParentFile(), hashedName(outputFile.getName(), hash));
+        if (hashed.isFile() && TextFiles.hash(hashed).equals(hash)) {
+            Files.delete(outputFile.toPath());
+        } else {
+            Files.move(outputFile.toPath(), hashed.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        String name = relativize(outputFile);
+        if (new File(name).isAbsolute()) {
+            log.warn(outputFile.getPath() + " is outside of " + root.getPath()
+                    + ", its absolute path is recorded in the asset manifest.");
+        }
+        String hashedName = relativize(hashed);
+        String previous;
+        synchronized (this) {
+            previous = assets.put(name, hashedName);
+        }
+        if (previous != null && !previous.equals(hashedName)) {
+            File stale = resolve(previous);
+            stale.delete();
+            Precompressor.deleteSiblings(stale);
+        }
+        return hashed;
+    }
+
+    /**
+     * @param outputFile the minified file, with its logical name
+     * @return the hashed file recorded for it, or null if there is none
+     */
+    synchronized File get(final File outputFile) {
+        String hashed = assets.get(relativize(outputFile));
+        return hashed == null ? null : resolve(hashed);
+    }
+
+    /**
+     * Forgets a hashed file, deleted with its source.
+     *
+     * @param hashedFile
+     * @return the minified file with its logical name
+     */
+    synchronized File remove(final File hashedFile) {
+        Matcher matcher = HASHED_NAME.matcher(hashedFile.getName());
+        File outputFile = matcher.matches()
+                ? new File(hashedFile.getParentFile(), matcher.group(1) + matcher.group(2)) : hashedFile;
+        assets.remove(relativize(outputFile));
+        return outputFile;
+    }
+
+    /**
+     * Writes the manifest, read by the server-side templates and by the next run.
+     *
+     * @param file
+     * @throws IOException
+     */
+    synchronized void save(final File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent.getPath());
+        }
+        StringWriter text = new StringWriter();
+        try (JsonWriter json = new JsonWriter(text)) {
+            json.beginObject();
+            for (Map.Entry<String, String> asset : assets.entrySet()) {
+                json.name(asset.getKey()).value(asset.getValue());
+            }
+            json.endObject();
+        }
+        TextFiles.write(file, false, text.toString());
+    }
+
+    /**
+     * @param file
+     * @return the name of the file relative to the root directory, or its absolute path if it is outside of it
+     */
+    private String relativize(final File file) {
+        URI name = root.getAbsoluteFile().toURI().relativize(file.getAbsoluteFile().toURI());
+        return name.isAbsolute() ? file.getAbsolutePath() : name.getPath();
+    }
+
+    /**
+     * @param name a name of the manifest, as {@link #relativize(File)} records it
+     * @return the file
+     */
+    private File resolve(final String name) {
+        File file = new File(name);
+        return file.isAbsolute() ? file : new File(root, name);
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link Minifier} that minifies several small sources in a single call, each into its own output, so that
+ * the fixed cost of a call into the minifier is paid once per batch rather than once per file.
+ */
+public interface BatchMinifier extends Minifier {
+
+    /**
+     * Minifies sources separately, in a single call. The failure of a source does not fail the others.
+     *
+     * @param sources the code of each source by its path
+     * @return the result of each source, in the order of the sources, with its failure if it could not be minified
+     */
+    List<MinifierResult> minifyBatch(Map<String, String> sources);
+}
@@ -0,0 +1,257 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Record of the files minified by earlier runs, used to process only added or changed sources
+ * and to delete the outputs of sources that were removed.
+ * Each source path relative to the sources directory is mapped to the hash of its content, the hash of the minifier
+ * options, which may contain any character, the precompression settings of its compressed siblings and its output
+ * file, last as a path may contain the separator. The executions of a module share the manifest file: the paths are prefixed with the execution
+ * that minified them, and the entries of the other executions are written back as they were read.
+ */
+class BuildManifest {
+    private static final String SEPARATOR = "|";
+
+    private final String execution;
+
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    // the entries of the other executions, by prefixed path
+    private final Map<String, String> others = new TreeMap<>();
+
+    BuildManifest(final String execution) {
+        this.execution = execution;
+    }
+
+    /**
+     * Identifies an execution by what it minifies and where, so that two executions of a module do not take the
+     * sources of each other for deleted ones, nor replace the entries of each other.
+     *
+     * @param sourceDir       the sources directory
+     * @param outputDirectory the output directory, or null if the outputs are written next to the sources
+     * @param typesToMinify   the types of files minified, e.g. "js,css"
+     * @return the prefix of the paths of the execution
+     */
+    static String execution(final File sourceDir, final File outputDirectory, final String typesToMinify) {
+        String output = outputDirectory == null ? "" : outputDirectory.getAbsolutePath();
+        return ContentHash.sha256((sourceDir.getAbsolutePath() + SEPARATOR + output + SEPARATOR + typesToMinify)
+                .getBytes(StandardCharsets.UTF_8)).substring(0, 16);
+    }
+
+    /**
+     * Loads the manifest of the previous run. A missing or unreadable manifest gives an empty one,
+     * so that all files are processed.
+     *
+     * @param file
+     * @param execution the execution whose entries are read, as {@link #execution(File, File, String)} names it
+     * @param log
+     * @return the {@link BuildManifest}
+     */
+    static BuildManifest load(final File file, final String execution, final Log log) {
+        BuildManifest manifest = new BuildManifest(execution);
+        if (!file.isFile()) {
+            return manifest;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            properties.load(in);
+        } catch (IOException e) {
+            log.warn("Could not read build manifest " + file.getPath() + ", all files will be minified.", e);
+            return manifest;
+        }
+
+        String prefix = execution + SEPARATOR;
+        for (String key : properties.stringPropertyNames()) {
+            if (!key.startsWith(prefix)) {
+                // the paths of manifests written before the executions were told apart are dropped
+                if (key.contains(SEPARATOR)) {
+                    manifest.others.put(key, properties.getProperty(key));
+                }
+                continue;
+            }
+            Entry entry = Entry.parse(properties.getProperty(key));
+            if (entry != null) {
+                manifest.entries.put(key.substring(prefix.length()), entry);
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Writes the manifest, to be read by the next run.
+     *
+     * @param file
+     * @throws IOException
+     */
+    void save(final File file) throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, String> entry : others.entrySet()) {
+            properties.setProperty(entry.getKey(), entry.getValue());
+        }
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            properties.setProperty(execution + SEPARATOR + entry.getKey(), entry.getValue().toString());
+        }
+
+        FileUtils.forceMkdir(file.getAbsoluteFile().getParentFile());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        properties.store(out, "frontend-files-uglifier build manifest");
+        TextFiles.write(file, false, ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    Entry get(final String path) {
+        return entries.get(path);
+    }
+
+    void put(final String path, final Entry entry) {
+        entries.put(path, entry);
+    }
+
+    void remove(final String path) {
+        entries.remove(path);
+    }
+
+    /**
+     * Removes the entries of the sources of the execution that are no longer part of the build.
+     *
+     * @param paths the paths of the current sources
+     * @return the removed entries
+     */
+    List<Entry> retainAll(final Collection<String> paths) {
+        List<Entry> removed = new ArrayList<>();
+        for (String path : new ArrayList<>(entries.keySet())) {
+            if (!paths.contains(path)) {
+                removed.add(entries.remove(path));
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * The state of a source when it was last minified.
+     */
+    static class Entry {
+        private final String hash;
+        private final String optionsHash;
+        private final long length;
+        private final long lastModified;
+        private final String precompression;
+        private final String outputPath;
+
+        Entry(String hash, String optionsHash, long length, long lastModified, String precompression,
+              String outputPath) {
+            this.hash = hash;
+            this.optionsHash = optionsHash;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.precompression = precompression;
+            this.outputPath = outputPath;
+        }
+
+        /**
+         * Creates the entry of a source that has just been minified.
+         *
+         * @param task
+         * @param precompression the settings its siblings were compressed with, empty if none were written
+         * @return the {@link Entry}
+         */
+        static Entry of(MinificationTask task, String precompression) {
+            File inputFile = task.getInputFile();
+            return new Entry(task.getHash(), hashOptions(task.getOptions()), inputFile.length(),
+                    inputFile.lastModified(), precompression, task.getPublishedFile().getAbsolutePath());
+        }
+
+        /**
+         * @param precompression
+         * @return the same entry, with siblings compressed with other settings
+         */
+        Entry withPrecompression(String precompression) {
+            return new Entry(hash, optionsHash, length, lastModified, precompression, outputPath);
+        }
+
+        private static Entry parse(String value) {
+            // the entries written before the precompression was recorded have one field less and are dropped
+            String[] fields = value.split("\\" + SEPARATOR, 6);
+            if (fields.length < 6) {
+                return null;
+            }
+            try {
+                return new Entry(fields[0], fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3]),
+                        fields[4], fields[5]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        String getHash() {
+            return hash;
+        }
+
+        /**
+         * @param options the minifier options of the current run
+         * @return true if the source was minified with the same options
+         */
+        boolean hasOptions(String options) {
+            return optionsHash.equals(hashOptions(options));
+        }
+
+        private static String hashOptions(String options) {
+            return ContentHash.sha256(options.getBytes(StandardCharsets.UTF_8));
+        }
+
+        long getLength() {
+            return length;
+        }
+
+        long getLastModified() {
+            return lastModified;
+        }
+
+        String getPrecompression() {
+            return precompression;
+        }
+
+        String getOutputPath() {
+            return outputPath;
+        }
+
+        @Override
+        public String toString() {
+            return hash + SEPARATOR + optionsHash + SEPARATOR + length + SEPARATOR + lastModified + SEPARATOR
+                    + precompression + SEPARATOR + outputPath;
+        }
+    }
+}
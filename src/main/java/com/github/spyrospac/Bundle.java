@@ -0,0 +1,52 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.maven.shared.model.fileset.FileSet;
+
+/**
+ * Sources minified together into a single output file, configured in the "bundles" parameter.
+ * The sources are added in the order of their includes, and in alphabetical order within an include.
+ */
+public class Bundle {
+    /**
+     * Name of the output file, relative to the output directory (or to the sources directory if there is none).
+     * Its extension, ".js" or ".css", selects the minifier.
+     */
+    private String name;
+    /**
+     * {@link FileSet} of the sources of the bundle.
+     */
+    private FileSet sources;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public FileSet getSources() {
+        return sources;
+    }
+
+    public void setSources(FileSet sources) {
+        this.sources = sources;
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import java.util.Map;
+
+/**
+ * A {@link Minifier} that minifies several sources together into a single output, e.g. so that names are mangled
+ * across files. The sources of a bundle given to a minifier without this interface are concatenated instead.
+ */
+public interface BundleMinifier extends Minifier {
+
+    /**
+     * Minifies sources into a single output, in a single pass.
+     *
+     * @param sources the code of each source by its path, in the order of the bundle
+     * @return the minified code and its diagnostics
+     */
+    MinifierResult minifyBundle(Map<String, String> sources);
+}
@@ -17,36 +17,55 @@ package com.github.spyrospac;
  *
  */
 
-import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.logging.Log;
 import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Class used to invoke uglify javascript file.
+ * The instance is bound to the thread that created it and must be closed on the same thread.
  */
-class CleanCSSJavaScriptContext {
-    private final Context cx = Context.enter();
+class CleanCSSJavaScriptContext implements BatchMinifier, SourceMapMinifier {
+    /**
+     * Identity of the bundled minifier, used to key its cached outputs.
+     */
+    static final String MINIFIER = "CSSO 3.5.1";
 
-    private ScriptableObject global;
+    private final Context cx = Watchdog.enterWatched();
 
-    CleanCSSJavaScriptContext(final Log log, final String... scripts) {
-        cx.setLanguageVersion(Context.VERSION_ES6);
-        global = cx.initStandardObjects();
-        ClassLoader cl = getClass().getClassLoader();
-        for (String script : scripts) {
+    private final JavaScriptEngine engine;
 
-            try (InputStreamReader in = new InputStreamReader(cl.getResourceAsStream("script/" + script), "UTF-8")) {
-                cx.evaluateReader(global, in, script, 1, null);
-            } catch (IOException e) {
-                log.error(e.getMessage(), e);
-            }
+    private final boolean sourceMap;
 
-        }
+    CleanCSSJavaScriptContext(final JavaScriptEngine engine) {
+        this(engine, false);
+    }
+
+    CleanCSSJavaScriptContext(final JavaScriptEngine engine, final boolean sourceMap) {
+        this.engine = engine;
+        this.sourceMap = sourceMap;
+    }
+
+    /**
+     * Compiles the CSSO library once, so that it can be shared by many contexts.
+     *
+     * @param log
+     * @param optimizationLevel the Rhino optimization level
+     * @param scripts
+     * @return the compiled {@link JavaScriptEngine}
+     */
+    static JavaScriptEngine compileEngine(final Log log, final int optimizationLevel, final String... scripts) {
+        return new JavaScriptEngine(log, Context.VERSION_ES6, optimizationLevel,
+                Arrays.asList("minifyCSS", "minifyCSSBatch"), scripts);
     }
 
     /**
@@ -57,9 +76,68 @@ class CleanCSSJavaScriptContext {
      * @throws IOException
      */
     String invokeCleanCssFunctionOnFile(final File file) throws IOException {
-        String data = FileUtils.readFileToString(file, "UTF-8");
-        ScriptableObject.putProperty(global, "data", data);
-        return cx.evaluateString(global,
-                "minifyCSS" + "(String(data));", "<cmd>", 1, null).toString();
+        return invokeCleanCssFunction(TextFiles.read(file).getCode());
+    }
+
+    /**
+     * Invokes the minifyCss() function with code.
+     *
+     * @param data
+     * @return minified code as a String
+     */
+    String invokeCleanCssFunction(final String data) {
+        return invokeCleanCssFunction(data, null, null).getCode();
+    }
+
+    /**
+     * Invokes the minifyCss() function with code, generating a source map if a file name is given.
+     *
+     * @param data
+     * @param filename       the name of the source in the map, or null for no source map
+     * @param inputSourceMap the source map of the code as JSON, or null
+     * @return the minified code and its source map
+     */
+    private MinifierResult invokeCleanCssFunction(final String data, final String filename,
+                                                  final String inputSourceMap) {
+        Object result = engine.call(cx, "minifyCSS", data, filename, inputSourceMap);
+        if (result instanceof Scriptable) {
+            Scriptable minified = (Scriptable) result;
+            return new MinifierResult(Context.toString(ScriptableObject.getProperty(minified, "code")),
+                    Collections.<String>emptyList(), Context.toString(ScriptableObject.getProperty(minified, "map")));
+        }
+        return new MinifierResult(result.toString());
+    }
+
+    @Override
+    public MinifierResult minify(final String name, final String code) {
+        return minify(name, code, null);
+    }
+
+    @Override
+    public MinifierResult minify(final String name, final String code, final String inputSourceMap) {
+        return invokeCleanCssFunction(code, sourceMap ? name : null, inputSourceMap);
+    }
+
+    /**
+     * Invokes the minifyCSSBatch() function, which minifies each code separately. With source maps,
+     * the sources are minified one by one.
+     */
+    @Override
+    public List<MinifierResult> minifyBatch(final Map<String, String> sources) {
+        if (sourceMap) {
+            List<MinifierResult> results = new ArrayList<>(sources.size());
+            for (Map.Entry<String, String> source : sources.entrySet()) {
+                results.add(minify(source.getKey(), source.getValue()));
+            }
+            return results;
+        }
+        Scriptable codes = cx.newArray(engine.getScope(), sources.values().toArray());
+        return JavaScriptEngine.toResults(engine.call(cx, "minifyCSSBatch", codes));
+    }
+
+    @Override
+    public void close() {
+        Context.exit();
+        engine.release();
     }
 }
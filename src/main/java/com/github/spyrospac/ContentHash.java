@@ -0,0 +1,86 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 hashes of file contents, as lower case hex strings.
+ */
+final class ContentHash {
+
+    private ContentHash() {
+    }
+
+    /**
+     * Hashes the given content.
+     *
+     * @param content
+     * @return the hex encoded SHA-256 of the content
+     */
+    static String sha256(final byte[] content) {
+        return sha256(content, "");
+    }
+
+    /**
+     * Hashes the given content together with a qualifier, e.g. the minifier and its options.
+     *
+     * @param content
+     * @param qualifier
+     * @return the hex encoded SHA-256 of the qualifier and the content
+     */
+    static String sha256(final byte[] content, final String qualifier) {
+        MessageDigest digest = newDigest();
+        if (!qualifier.isEmpty()) {
+            digest.update(qualifier.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return hex(digest.digest(content));
+    }
+
+    /**
+     * Hashes the remaining content of a buffer, e.g. a memory mapped file, without copying it to the heap.
+     *
+     * @param content
+     * @return the hex encoded SHA-256 of the content
+     */
+    static String sha256(final ByteBuffer content) {
+        MessageDigest digest = newDigest();
+        digest.update(content);
+        return hex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(final byte[] hash) {
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * CSSO running in Rhino, the default CSS backend.
+ * The library is compiled once per worker thread and optimization level, and reused across files.
+ */
+public class CssoMinifierProvider implements MinifierProvider {
+    /**
+     * Name of the backend in the "cssEngine" parameter.
+     */
+    public static final String NAME = "rhino-csso";
+
+    private final JavaScriptEnginePool engines = new JavaScriptEnginePool() {
+        @Override
+        JavaScriptEngine compileEngine(final Log log, final int optimizationLevel) {
+            return CleanCSSJavaScriptContext.compileEngine(log, optimizationLevel,
+                    "clean-css-v4.2.1.js", "sourceMap.js", "minifyCSS.js");
+        }
+
+        @Override
+        Minifier newMinifier(final JavaScriptEngine engine, final MinifierOptions options) {
+            return new CleanCSSJavaScriptContext(engine, options.isSourceMap());
+        }
+    };
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public String getType() {
+        return CSS;
+    }
+
+    @Override
+    public String getIdentity(final MinifierOptions options) {
+        return CleanCSSJavaScriptContext.MINIFIER;
+    }
+
+    @Override
+    public Minifier createMinifier(final MinifierOptions options, final Log log) {
+        return engines.createMinifier(options, log);
+    }
+}
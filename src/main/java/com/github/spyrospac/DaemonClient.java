@@ -0,0 +1,313 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client of a {@link MinifierDaemon}. The minifier backends are wrapped so that their minifiers send the sources
+ * to the daemon, falling back to minifying in process when no daemon is running, when the daemon runs another
+ * version of the backend, or when the connection fails.
+ * The time of the round trips to the daemon and the time the daemon spent minifying are summed, to compare them
+ * with the time of an engine started in process.
+ */
+final class DaemonClient {
+    private static final int CONNECT_TIMEOUT = 1000;
+
+    private final int port;
+    private final long fileTimeout;
+    private final Log log;
+    private final AtomicBoolean available = new AtomicBoolean(true);
+
+    private final AtomicInteger files = new AtomicInteger();
+    private final AtomicLong roundTripNanos = new AtomicLong();
+    private final AtomicLong daemonNanos = new AtomicLong();
+
+    /**
+     * @param port
+     * @param fileTimeout the time in milliseconds after which the daemon stops a source, 0 for no limit
+     * @param log
+     */
+    DaemonClient(final int port, final long fileTimeout, final Log log) {
+        this.port = port;
+        this.fileTimeout = fileTimeout;
+        this.log = log;
+    }
+
+    /**
+     * @return the number of files minified by the daemon
+     */
+    int getFiles() {
+        return files.get();
+    }
+
+    /**
+     * @return the time from sending the sources to the daemon to reading their minified code, in nanoseconds
+     */
+    long getRoundTripNanos() {
+        return roundTripNanos.get();
+    }
+
+    /**
+     * @return the time the daemon spent minifying, in nanoseconds
+     */
+    long getDaemonNanos() {
+        return daemonNanos.get();
+    }
+
+    /**
+     * Wraps a backend, so that its minifiers minify in the daemon if it is running.
+     *
+     * @param local the backend minifying in process
+     * @return the wrapped backend, with the identity of the local one
+     */
+    MinifierProvider wrap(final MinifierProvider local) {
+        return new MinifierProvider() {
+            @Override
+            public String getName() {
+                return local.getName();
+            }
+
+            @Override
+            public String getType() {
+                return local.getType();
+            }
+
+            @Override
+            public String getIdentity(final MinifierOptions options) {
+                return local.getIdentity(options);
+            }
+
+            @Override
+            public Minifier createMinifier(final MinifierOptions options, final Log log) {
+                Minifier minifier = connect(local, options);
+                return minifier != null ? minifier : local.createMinifier(options, log);
+            }
+        };
+    }
+
+    /**
+     * Connects to the daemon with the backend and options of a minifier.
+     *
+     * @param local
+     * @param options
+     * @return the minifier sending the sources to the daemon, or null to minify in process
+     */
+    private Minifier connect(final MinifierProvider local, final MinifierOptions options) {
+        if (!available.get()) {
+            return null;
+        }
+
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), CONNECT_TIMEOUT);
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(MinifierDaemon.MAGIC);
+            MinifierDaemon.writeString(out, local.getType());
+            MinifierDaemon.writeString(out, local.getName());
+            MinifierDaemon.writeString(out, local.getIdentity(options));
+            out.writeBoolean(options.isMangle());
+            out.writeInt(options.getOptimizationLevel());
+            out.writeBoolean(options.isSourceMap());
+            MinifierDaemon.writeString(out, options.getJsOptions());
+            out.writeLong(fileTimeout);
+            out.flush();
+
+            if (in.readByte() != MinifierDaemon.OK) {
+                log.warn("The minification daemon cannot minify with " + local.getName() + ": "
+                        + MinifierDaemon.readString(in) + ", minifying in process.");
+                socket.close();
+                return null;
+            }
+            return in.readBoolean() ? new RemoteBundleMinifier(socket, in, out, local, options)
+                    : new RemoteMinifier(socket, in, out, local, options);
+        } catch (IOException e) {
+            closeQuietly(socket);
+            if (available.compareAndSet(true, false)) {
+                log.info("No minification daemon on port " + port + " (" + e.getMessage()
+                        + "), minifying in process.");
+            }
+            return null;
+        }
+    }
+
+    private static void closeQuietly(final Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // already closed
+        }
+    }
+
+    /**
+     * Minifier sending the sources to the daemon over its connection. If the connection fails, this minifier
+     * and the later ones minify in process.
+     */
+    private class RemoteMinifier implements SourceMapMinifier {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        final MinifierProvider local;
+        final MinifierOptions options;
+
+        Minifier fallback;
+
+        RemoteMinifier(final Socket socket, final DataInputStream in, final DataOutputStream out,
+                       final MinifierProvider local, final MinifierOptions options) {
+            this.socket = socket;
+            this.in = in;
+            this.out = out;
+            this.local = local;
+            this.options = options;
+        }
+
+        @Override
+        public MinifierResult minify(final String name, final String code) {
+            return minify(name, code, null);
+        }
+
+        @Override
+        public MinifierResult minify(final String name, final String code, final String inputSourceMap) {
+            if (fallback == null) {
+                long start = System.nanoTime();
+                try {
+                    out.writeByte(MinifierDaemon.MINIFY);
+                    MinifierDaemon.writeString(out, name);
+                    MinifierDaemon.writeString(out, code);
+                    MinifierDaemon.writeString(out, inputSourceMap);
+                    out.flush();
+                    return readResult(name, start);
+                } catch (IOException e) {
+                    fallBack(e);
+                }
+            }
+            return fallback instanceof SourceMapMinifier
+                    ? ((SourceMapMinifier) fallback).minify(name, code, inputSourceMap) : fallback.minify(name, code);
+        }
+
+        /**
+         * Reads the response of the daemon.
+         *
+         * @param name  the name of the source, for the errors
+         * @param start the time the request was sent
+         * @return the minified code
+         * @throws MinificationException with the position the daemon reported, if the minifier rejected the source
+         * @throws Watchdog.Timeout if the daemon stopped the source after the file timeout
+         * @throws IOException
+         */
+        MinifierResult readResult(final String name, final long start) throws IOException {
+            int status = in.readByte();
+            if (status == MinifierDaemon.TIMEOUT) {
+                throw new Watchdog.Timeout(MinifierDaemon.readString(in));
+            }
+            if (status == MinifierDaemon.FAILED) {
+                throw new MinificationException(MinifierDaemon.readString(in), MinifierDaemon.readString(in),
+                        in.readInt(), in.readInt());
+            }
+            if (status != MinifierDaemon.OK) {
+                throw new IllegalStateException("The minification daemon failed to minify " + name + ": "
+                        + MinifierDaemon.readString(in));
+            }
+            String code = MinifierDaemon.readString(in);
+            String sourceMap = MinifierDaemon.readString(in);
+            MinifierResult result = new MinifierResult(code, MinifierDaemon.readStrings(in), sourceMap);
+            daemonNanos.addAndGet(in.readLong());
+            roundTripNanos.addAndGet(System.nanoTime() - start);
+            files.incrementAndGet();
+            return result;
+        }
+
+        /**
+         * Switches to a minifier in process after a failure of the connection.
+         *
+         * @param e the failure
+         */
+        void fallBack(final IOException e) {
+            closeQuietly(socket);
+            if (available.compareAndSet(true, false)) {
+                log.warn("Lost the connection to the minification daemon (" + e.getMessage()
+                        + "), minifying in process.");
+            }
+            fallback = local.createMinifier(options, log);
+        }
+
+        @Override
+        public void close() {
+            if (fallback != null) {
+                fallback.close();
+                return;
+            }
+            try {
+                out.writeByte(MinifierDaemon.CLOSE);
+                out.flush();
+            } catch (IOException e) {
+                // the daemon is gone, nothing to release
+            }
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Remote minifier of a backend minifying the sources of a bundle in a single call.
+     */
+    private class RemoteBundleMinifier extends RemoteMinifier implements BundleMinifier {
+
+        RemoteBundleMinifier(final Socket socket, final DataInputStream in, final DataOutputStream out,
+                             final MinifierProvider local, final MinifierOptions options) {
+            super(socket, in, out, local, options);
+        }
+
+        @Override
+        public MinifierResult minifyBundle(final Map<String, String> sources) {
+            if (fallback == null) {
+                long start = System.nanoTime();
+                try {
+                    out.writeByte(MinifierDaemon.BUNDLE);
+                    out.writeInt(sources.size());
+                    for (Map.Entry<String, String> source : sources.entrySet()) {
+                        MinifierDaemon.writeString(out, source.getKey());
+                        MinifierDaemon.writeString(out, source.getValue());
+                    }
+                    out.flush();
+                    return readResult(sources.keySet().toString(), start);
+                } catch (IOException e) {
+                    fallBack(e);
+                }
+            }
+            if (!(fallback instanceof BundleMinifier)) {
+                throw new IllegalStateException(local.getName() + " cannot minify bundles in process.");
+            }
+            return ((BundleMinifier) fallback).minifyBundle(sources);
+        }
+    }
+}
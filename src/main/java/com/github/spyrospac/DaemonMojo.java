@@ -0,0 +1,71 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.IOException;
+
+/**
+ * Goal which runs the minification daemon until Maven is stopped, e.g. with Ctrl+C. The daemon keeps warm engines
+ * for the builds of this machine configured with useDaemon, so that they do not start their own.
+ * It does not need a project: mvn com.github.spyrospac:frontend-files-uglifier:daemon
+ */
+@Mojo(name = "daemon", requiresProject = false)
+public class DaemonMojo extends AbstractMojo {
+
+    /**
+     * Loopback port the daemon listens on.
+     * Default value is 47321.
+     */
+    @Parameter(property = "uglify.daemonPort")
+    private int daemonPort = MinifierDaemon.DEFAULT_PORT;
+
+    /**
+     * Rhino optimization level of the engines compiled when the daemon starts. Engines of other levels are
+     * compiled on the first file of a client using them.
+     * Default value is 9.
+     */
+    @Parameter(property = "uglify.engineOptimizationLevel")
+    private int engineOptimizationLevel = 9;
+
+    /**
+     * Number of client connections served at once, each on a thread with its own engine. The other clients are
+     * refused and minify in process.
+     * Default value is the number of available processors.
+     */
+    @Parameter(property = "uglify.threads")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    public void execute() throws MojoExecutionException {
+        try (MinifierDaemon daemon = new MinifierDaemon(daemonPort, Math.max(1, threads), getLog())) {
+            long start = System.nanoTime();
+            MinifierOptions options = new MinifierOptions();
+            options.setOptimizationLevel(engineOptimizationLevel);
+            daemon.warmUp(options);
+            getLog().info("Minification daemon started in " + (System.nanoTime() - start) / 1000000
+                    + " milliseconds, listening on port " + daemon.getPort() + ".");
+            daemon.serve();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failure to run the minification daemon on port " + daemonPort + ".", e);
+        }
+    }
+}
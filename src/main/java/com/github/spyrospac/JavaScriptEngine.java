@@ -0,0 +1,266 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.maven.plugin.logging.Log;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.JavaScriptException;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Library scripts compiled and evaluated once into a sealed scope, and the functions of the libraries that are
+ * called directly for every file, with the Java values as their arguments, so that nothing is parsed again per file.
+ * The libraries are compiled to classes at optimization level 9 when the plugin is built; the scripts are compiled
+ * at run time only if these classes are missing or another optimization level is used.
+ * The libraries keep state in their module variables, so an engine must not be used by two threads at once.
+ */
+final class JavaScriptEngine {
+    /**
+     * Package of the classes compiled from the library scripts when the plugin is built, in a sub-package
+     * per language version and optimization level, e.g. "v200_opt9", as a script shared by two engines is
+     * compiled for each of them.
+     */
+    static final String PRECOMPILED_PACKAGE = "com.github.spyrospac.compiled";
+
+    /**
+     * Optimization level that runs the scripts in Rhino's interpreter instead of compiling them to bytecode.
+     */
+    static final int INTERPRETED = -1;
+
+    private final Log log;
+
+    private final int languageVersion;
+
+    private final int optimizationLevel;
+
+    private final ScriptableObject sharedScope;
+
+    private final Map<String, Function> functions = new HashMap<>();
+
+    private JavaScriptEnginePool pool;
+
+    /**
+     * Compiles the library scripts and looks up the functions that are called for every file.
+     *
+     * @param log
+     * @param languageVersion   the Rhino language version to compile and run the scripts with
+     * @param optimizationLevel the Rhino optimization level, {@link #INTERPRETED} or 0 to 9 to compile to bytecode
+     * @param functions         the names of the global functions called for the files
+     * @param scripts           the library scripts found under "script/" in the classpath
+     */
+    JavaScriptEngine(final Log log, final int languageVersion, final int optimizationLevel,
+                     final List<String> functions, final String... scripts) {
+        this.log = log;
+        this.languageVersion = languageVersion;
+        this.optimizationLevel = optimizationLevel;
+
+        Context cx = Watchdog.enterWatched();
+        try {
+            cx.setLanguageVersion(languageVersion);
+            // Rhino cannot seal the standard objects in ES6 mode, so only the global object is sealed below
+            sharedScope = cx.initStandardObjects();
+            ClassLoader cl = getClass().getClassLoader();
+            for (String script : scripts) {
+
+                try {
+                    Script compiled = optimizationLevel == INTERPRETED ? null : loadPrecompiled(cl, script);
+                    if (compiled == null) {
+                        compiled = compile(cx, cl, script);
+                    }
+                    compiled.exec(cx, sharedScope);
+                } catch (IOException e) {
+                    log.error(e.getMessage(), e);
+                }
+
+            }
+            for (String function : functions) {
+                Object value = ScriptableObject.getProperty(sharedScope, function);
+                if (!(value instanceof Function)) {
+                    throw new IllegalStateException("The scripts " + Arrays.toString(scripts)
+                            + " do not define the function " + function + ".");
+                }
+                this.functions.put(function, (Function) value);
+            }
+            sharedScope.sealObject();
+        } finally {
+            Context.exit();
+        }
+    }
+
+    /**
+     * Names the class of a library script compiled when the plugin is built: the name of the script without ".js",
+     * with the characters that are not valid in a Java identifier replaced by "_", as Rhino's class compiler does,
+     * in the package of the language version and optimization level.
+     *
+     * @param script
+     * @param languageVersion   the Rhino language version the script is compiled with
+     * @param optimizationLevel the Rhino optimization level the script is compiled at
+     * @return the fully qualified class name
+     */
+    static String precompiledClassName(final String script, final int languageVersion, final int optimizationLevel) {
+        String name = script.endsWith(".js") ? script.substring(0, script.length() - 3) : script;
+        StringBuilder className = new StringBuilder(PRECOMPILED_PACKAGE).append(".v").append(languageVersion)
+                .append("_opt").append(optimizationLevel).append('.');
+        if (!Character.isJavaIdentifierStart(name.charAt(0))) {
+            className.append('_');
+        }
+        for (char c : name.toCharArray()) {
+            className.append(Character.isJavaIdentifierPart(c) ? c : '_');
+        }
+        return className.toString();
+    }
+
+    /**
+     * Loads the class compiled from a library script at the language version and optimization level of the engine
+     * when the plugin was built.
+     *
+     * @param cl
+     * @param script
+     * @return the precompiled {@link Script}, or null if there is none
+     */
+    private Script loadPrecompiled(final ClassLoader cl, final String script) {
+        String className = precompiledClassName(script, languageVersion, optimizationLevel);
+        try {
+            Object compiled = Class.forName(className, true, cl).getDeclaredConstructor().newInstance();
+            log.debug("Loaded precompiled " + script);
+            return (Script) compiled;
+        } catch (ClassNotFoundException e) {
+            log.debug("No precompiled " + script + " at optimization level " + optimizationLevel + ", compiling it");
+            return null;
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            log.warn("Could not load precompiled " + script + ", compiling it", e);
+            return null;
+        }
+    }
+
+    /**
+     * Compiles a library script at the optimization level of the engine. A script with a function too large
+     * for a JVM method (64KB of bytecode) is compiled again for the interpreter.
+     *
+     * @param cx
+     * @param cl
+     * @param script
+     * @return the compiled {@link Script}
+     * @throws IOException
+     */
+    private Script compile(final Context cx, final ClassLoader cl, final String script) throws IOException {
+        cx.setOptimizationLevel(optimizationLevel);
+        try (Reader in = new InputStreamReader(cl.getResourceAsStream("script/" + script), "UTF-8")) {
+            return cx.compileReader(in, script, 1, null);
+        } catch (EvaluatorException e) {
+            if (optimizationLevel == INTERPRETED || e.getMessage() == null || !e.getMessage().contains("64K")) {
+                throw e;
+            }
+            log.warn("Could not compile " + script + " to bytecode, it will run in the interpreter: " + e.details());
+        }
+
+        cx.setOptimizationLevel(INTERPRETED);
+        try (Reader in = new InputStreamReader(cl.getResourceAsStream("script/" + script), "UTF-8")) {
+            return cx.compileReader(in, script, 1, null);
+        }
+    }
+
+    int getOptimizationLevel() {
+        return optimizationLevel;
+    }
+
+    /**
+     * Sets the pool the engine is returned to by {@link #release()}.
+     *
+     * @param pool
+     */
+    void setPool(final JavaScriptEnginePool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the engine to its pool when its minifier is closed. An engine without a pool is left as it is.
+     */
+    void release() {
+        if (pool != null) {
+            pool.release(this);
+        }
+    }
+
+    /**
+     * @return the sealed shared scope, in which the objects passed to the functions are created
+     */
+    Scriptable getScope() {
+        return sharedScope;
+    }
+
+    /**
+     * Calls a function of the libraries. Java strings, booleans and null are JavaScript values as they are,
+     * objects are created in {@link #getScope()}. An error thrown by the libraries, e.g. a syntax error of the code,
+     * is thrown as a {@link MinificationException}. An engine stopped by the {@link Watchdog} is dropped from its pool.
+     * The language version and optimization level are set on every call,
+     * as contexts of different engines share the thread's {@link Context}.
+     *
+     * @param cx       the context of the current thread
+     * @param function the name of a function given to the constructor
+     * @param args     the arguments of the function
+     * @return the result of the function
+     */
+    Object call(final Context cx, final String function, final Object... args) {
+        cx.setLanguageVersion(languageVersion);
+        cx.setOptimizationLevel(optimizationLevel);
+        try {
+            return functions.get(function).call(cx, sharedScope, sharedScope, args);
+        } catch (Watchdog.Timeout e) {
+            // the libraries were stopped in the middle of a file, the engine is not reused
+            pool = null;
+            throw e;
+        } catch (JavaScriptException e) {
+            MinificationException failure = MinificationException.of(e.getValue());
+            failure.initCause(e);
+            throw failure;
+        }
+    }
+
+    /**
+     * Reads the results of a batch function, an array of objects with the code of a file or the error it threw.
+     *
+     * @param results the array returned by the function
+     * @return the result of each file
+     */
+    static List<MinifierResult> toResults(final Object results) {
+        Scriptable array = (Scriptable) results;
+        int length = (int) Context.toNumber(ScriptableObject.getProperty(array, "length"));
+        List<MinifierResult> list = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            Scriptable result = (Scriptable) ScriptableObject.getProperty(array, i);
+            Object error = ScriptableObject.getProperty(result, "error");
+            list.add(error != Scriptable.NOT_FOUND ? MinifierResult.failure(MinificationException.of(error))
+                    : new MinifierResult(Context.toString(ScriptableObject.getProperty(result, "code"))));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Engines of a backend that are not in use, by optimization level.
+ * The libraries keep state in their own module variables while they minify (e.g. the tokenizer of CSSO or the
+ * mangler of UglifyJS), so an engine is used by a single minifier at a time. Engines are compiled on demand,
+ * at most one per worker thread, and reused by the minifiers created afterwards.
+ * The providers, and so their pools, live as long as the plugin in the Maven session, so at most one idle engine
+ * per processor is kept by optimization level and the others are left to the garbage collector.
+ */
+abstract class JavaScriptEnginePool {
+    private final Map<Integer, Deque<JavaScriptEngine>> idle = new HashMap<>();
+    private final int maxIdle = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Compiles a new engine of the backend.
+     *
+     * @param log
+     * @param optimizationLevel the Rhino optimization level
+     * @return the compiled {@link JavaScriptEngine}
+     */
+    abstract JavaScriptEngine compileEngine(Log log, int optimizationLevel);
+
+    /**
+     * Creates the minifier of the backend on an engine.
+     *
+     * @param engine  an engine that is not used by any other minifier
+     * @param options
+     * @return the new minifier, bound to the current thread, which releases the engine when it is closed
+     */
+    abstract Minifier newMinifier(JavaScriptEngine engine, MinifierOptions options);
+
+    /**
+     * Creates a minifier on an idle engine, or on a new one if all are in use.
+     * The minifier gives the engine back with {@link JavaScriptEngine#release()} when it is closed.
+     *
+     * @param options
+     * @param log
+     * @return the new minifier
+     */
+    Minifier createMinifier(final MinifierOptions options, final Log log) {
+        JavaScriptEngine engine = acquire(options.getOptimizationLevel());
+        if (engine == null) {
+            engine = compileEngine(log, options.getOptimizationLevel());
+            engine.setPool(this);
+        }
+        return newMinifier(engine, options);
+    }
+
+    private synchronized JavaScriptEngine acquire(final int optimizationLevel) {
+        Deque<JavaScriptEngine> engines = idle.get(optimizationLevel);
+        return engines == null ? null : engines.poll();
+    }
+
+    /**
+     * Puts an engine back in the pool, once the minifier using it is closed, unless enough engines are idle.
+     *
+     * @param engine
+     */
+    synchronized void release(final JavaScriptEngine engine) {
+        Deque<JavaScriptEngine> engines = idle.get(engine.getOptimizationLevel());
+        if (engines == null) {
+            engines = new ArrayDeque<>();
+            idle.put(engine.getOptimizationLevel(), engines);
+        }
+        if (engines.size() < maxIdle) {
+            engines.push(engine);
+        }
+    }
+}
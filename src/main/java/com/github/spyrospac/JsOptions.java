@@ -0,0 +1,252 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * UglifyJS compress and output options, configured in the "jsOptions" parameter. A preset gives the defaults,
+ * which the other options override:
+ * <ul>
+ * <li>"default": the defaults of UglifyJS</li>
+ * <li>"fast": a single compress pass without the costly variable reductions, and no mangling, for quick builds</li>
+ * <li>"max": three compress passes and the top level names dropped when unused and mangled, for the smallest
+ * outputs of sources that do not share globals with other scripts</li>
+ * </ul>
+ */
+public class JsOptions {
+    static final String DEFAULT = "default";
+    static final String FAST = "fast";
+    static final String MAX = "max";
+    static final List<String> PRESETS = Arrays.asList(DEFAULT, FAST, MAX);
+
+    /**
+     * Name of the preset, "default", "fast" or "max".
+     */
+    private String preset = DEFAULT;
+    /**
+     * False to skip the compress step, keeping only the whitespace removal and the mangling.
+     */
+    private Boolean compress;
+    /**
+     * Number of times the compress step runs.
+     */
+    private Integer passes;
+    /**
+     * True to drop the unused top level functions and variables, and to mangle the top level names.
+     */
+    private Boolean toplevel;
+    /**
+     * False to skip the reduction of the variables assigned once.
+     */
+    private Boolean reduceVars;
+    /**
+     * True to drop the calls to console functions.
+     */
+    private Boolean dropConsole;
+    /**
+     * Functions without side effects, whose calls are dropped when their result is unused.
+     */
+    private List<String> pureFuncs;
+    /**
+     * Other UglifyJS compress options by name. The values true, false and numbers are passed as such,
+     * other values as strings.
+     */
+    private Map<String, String> compressOptions;
+    /**
+     * UglifyJS output options by name, with values like the compress options.
+     */
+    private Map<String, String> outputOptions;
+
+    public String getPreset() {
+        return preset;
+    }
+
+    public void setPreset(String preset) {
+        this.preset = preset;
+    }
+
+    public Boolean getCompress() {
+        return compress;
+    }
+
+    public void setCompress(Boolean compress) {
+        this.compress = compress;
+    }
+
+    public Integer getPasses() {
+        return passes;
+    }
+
+    public void setPasses(Integer passes) {
+        this.passes = passes;
+    }
+
+    public Boolean getToplevel() {
+        return toplevel;
+    }
+
+    public void setToplevel(Boolean toplevel) {
+        this.toplevel = toplevel;
+    }
+
+    public Boolean getReduceVars() {
+        return reduceVars;
+    }
+
+    public void setReduceVars(Boolean reduceVars) {
+        this.reduceVars = reduceVars;
+    }
+
+    public Boolean getDropConsole() {
+        return dropConsole;
+    }
+
+    public void setDropConsole(Boolean dropConsole) {
+        this.dropConsole = dropConsole;
+    }
+
+    public List<String> getPureFuncs() {
+        return pureFuncs;
+    }
+
+    public void setPureFuncs(List<String> pureFuncs) {
+        this.pureFuncs = pureFuncs;
+    }
+
+    public Map<String, String> getCompressOptions() {
+        return compressOptions;
+    }
+
+    public void setCompressOptions(Map<String, String> compressOptions) {
+        this.compressOptions = compressOptions;
+    }
+
+    public Map<String, String> getOutputOptions() {
+        return outputOptions;
+    }
+
+    public void setOutputOptions(Map<String, String> outputOptions) {
+        this.outputOptions = outputOptions;
+    }
+
+    /**
+     * @return false if the preset does not mangle, whatever the mangle parameter
+     */
+    boolean isMangle() {
+        return !FAST.equals(preset);
+    }
+
+    /**
+     * Merges the options over the defaults of the preset.
+     *
+     * @return the UglifyJS minify options as a JSON object, without the mangle option, or null if all the options
+     * are the defaults of UglifyJS
+     */
+    String toJson() {
+        Map<String, Object> compress = new LinkedHashMap<>();
+        Map<String, Object> options = new LinkedHashMap<>();
+        if (FAST.equals(preset)) {
+            compress.put("reduce_vars", false);
+            compress.put("collapse_vars", false);
+        } else if (MAX.equals(preset)) {
+            compress.put("passes", 3);
+            options.put("toplevel", true);
+        }
+        put(compress, "passes", passes);
+        put(compress, "reduce_vars", reduceVars);
+        put(compress, "drop_console", dropConsole);
+        put(compress, "pure_funcs", pureFuncs);
+        putAll(compress, compressOptions);
+        put(options, "toplevel", toplevel);
+
+        if (Boolean.FALSE.equals(this.compress)) {
+            options.put("compress", false);
+        } else if (!compress.isEmpty()) {
+            options.put("compress", compress);
+        }
+        if (outputOptions != null && !outputOptions.isEmpty()) {
+            Map<String, Object> output = new LinkedHashMap<>();
+            putAll(output, outputOptions);
+            options.put("output", output);
+        }
+        if (options.isEmpty()) {
+            return null;
+        }
+
+        StringWriter out = new StringWriter();
+        try (JsonWriter json = new JsonWriter(out)) {
+            write(json, options);
+        } catch (IOException e) {
+            // a StringWriter does not fail
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    private static void put(Map<String, Object> options, String name, Object value) {
+        if (value != null) {
+            options.put(name, value);
+        }
+    }
+
+    private static void putAll(Map<String, Object> options, Map<String, String> values) {
+        if (values == null) {
+            return;
+        }
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            String text = value.getValue() == null ? "" : value.getValue().trim();
+            if ("true".equals(text) || "false".equals(text)) {
+                options.put(value.getKey(), Boolean.valueOf(text));
+            } else if (text.matches("-?\\d{1,18}")) {
+                options.put(value.getKey(), Long.valueOf(text));
+            } else {
+                options.put(value.getKey(), value.getValue());
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void write(JsonWriter json, Object value) throws IOException {
+        if (value instanceof Map) {
+            json.beginObject();
+            for (Map.Entry<String, Object> member : ((Map<String, Object>) value).entrySet()) {
+                json.name(member.getKey());
+                write(json, member.getValue());
+            }
+            json.endObject();
+        } else if (value instanceof List) {
+            json.beginArray();
+            for (Object item : (List<Object>) value) {
+                write(json, item);
+            }
+            json.endArray();
+        } else if (value instanceof Boolean) {
+            json.value((boolean) (Boolean) value);
+        } else if (value instanceof Number) {
+            json.value(((Number) value).longValue());
+        } else {
+            json.value(String.valueOf(value));
+        }
+    }
+}
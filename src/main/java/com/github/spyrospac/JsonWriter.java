@@ -0,0 +1,188 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Minimal streaming writer of JSON documents, for the reports of the plugin.
+ * Commas between members are added as values are written; the caller balances the objects and arrays.
+ * {@link #unescape(String)} reads back the strings it writes.
+ */
+final class JsonWriter implements Closeable {
+    private final Writer out;
+    private boolean separate;
+
+    JsonWriter(final Writer out) {
+        this.out = out;
+    }
+
+    JsonWriter beginObject() throws IOException {
+        separate();
+        out.write('{');
+        return this;
+    }
+
+    JsonWriter endObject() throws IOException {
+        out.write('}');
+        separate = true;
+        return this;
+    }
+
+    JsonWriter beginArray() throws IOException {
+        separate();
+        out.write('[');
+        return this;
+    }
+
+    JsonWriter endArray() throws IOException {
+        out.write(']');
+        separate = true;
+        return this;
+    }
+
+    /**
+     * Writes the name of the next member of an object.
+     *
+     * @param name
+     * @return this writer
+     * @throws IOException
+     */
+    JsonWriter name(final String name) throws IOException {
+        separate();
+        string(name);
+        out.write(':');
+        return this;
+    }
+
+    JsonWriter value(final String value) throws IOException {
+        separate();
+        if (value == null) {
+            out.write("null");
+        } else {
+            string(value);
+        }
+        separate = true;
+        return this;
+    }
+
+    JsonWriter value(final long value) throws IOException {
+        separate();
+        out.write(Long.toString(value));
+        separate = true;
+        return this;
+    }
+
+    JsonWriter value(final double value) throws IOException {
+        separate();
+        out.write(Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value));
+        separate = true;
+        return this;
+    }
+
+    JsonWriter value(final boolean value) throws IOException {
+        separate();
+        out.write(Boolean.toString(value));
+        separate = true;
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void separate() throws IOException {
+        if (separate) {
+            out.write(',');
+            separate = false;
+        }
+    }
+
+    /**
+     * Decodes the escape sequences of a JSON string, without its quotes.
+     *
+     * @param value
+     * @return the decoded string
+     * @throws IllegalArgumentException if an escape sequence is invalid
+     */
+    static String unescape(final String value) {
+        StringBuilder text = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c != '\\') {
+                text.append(c);
+                continue;
+            }
+            if (++i == value.length()) {
+                throw new IllegalArgumentException("Unterminated escape sequence in " + value);
+            }
+            c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    text.append(c);
+                    break;
+                case 'b':
+                    text.append('\b');
+                    break;
+                case 'f':
+                    text.append('\f');
+                    break;
+                case 'n':
+                    text.append('\n');
+                    break;
+                case 'r':
+                    text.append('\r');
+                    break;
+                case 't':
+                    text.append('\t');
+                    break;
+                case 'u':
+                    if (i + 4 >= value.length()) {
+                        throw new IllegalArgumentException("Unterminated escape sequence in " + value);
+                    }
+                    text.append((char) Integer.parseInt(value.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid escape sequence \\" + c + " in " + value);
+            }
+        }
+        return text.toString();
+    }
+
+    private void string(final String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+}
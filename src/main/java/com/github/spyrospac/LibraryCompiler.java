@@ -0,0 +1,81 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.mozilla.javascript.CompilerEnvirons;
+import org.mozilla.javascript.optimizer.ClassCompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compiles the minifier libraries to classes when the plugin is built, like Rhino's jsc tool, with the callbacks
+ * of the instruction observer that the {@link Watchdog} relies on. jsc of Rhino 1.7.7.2 rejects its own
+ * -observe-instruction-count option. The classes are named by
+ * {@link JavaScriptEngine#precompiledClassName(String, int, int)}, as the engines load them.
+ * <p>
+ * Usage: LibraryCompiler [-version VERSION] [-opt LEVEL] [-encoding CHARSET] -d DIRECTORY SOURCE...
+ */
+public final class LibraryCompiler {
+    private LibraryCompiler() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        CompilerEnvirons compilerEnv = new CompilerEnvirons();
+        compilerEnv.setGenerateDebugInfo(false);
+        compilerEnv.setGenerateObserverCount(true);
+        Charset encoding = Charset.defaultCharset();
+        File directory = new File(".");
+        List<File> sources = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-version":
+                    compilerEnv.setLanguageVersion(Integer.parseInt(args[++i]));
+                    break;
+                case "-opt":
+                    compilerEnv.setOptimizationLevel(Integer.parseInt(args[++i]));
+                    break;
+                case "-encoding":
+                    encoding = Charset.forName(args[++i]);
+                    break;
+                case "-d":
+                    directory = new File(args[++i]);
+                    break;
+                default:
+                    sources.add(new File(args[i]));
+            }
+        }
+
+        ClassCompiler compiler = new ClassCompiler(compilerEnv);
+        for (File source : sources) {
+            String code = new String(Files.readAllBytes(source.toPath()), encoding);
+            Object[] classes = compiler.compileToClassFiles(code, source.getName(), 1,
+                    JavaScriptEngine.precompiledClassName(source.getName(), compilerEnv.getLanguageVersion(),
+                            compilerEnv.getOptimizationLevel()));
+            for (int i = 0; i < classes.length; i += 2) {
+                File classFile = new File(directory, ((String) classes[i]).replace('.', File.separatorChar) + ".class");
+                Files.createDirectories(classFile.getParentFile().toPath());
+                Files.write(classFile.toPath(), (byte[]) classes[i + 1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * In memory cache of minified outputs, shared by the executions of the plugin in a Maven session, so that a source
+ * minified by several modules, e.g. the same vendor library, is minified once. Entries are keyed like those of the
+ * {@link MinificationCache}. The least recently used entries are evicted when the cache grows over its maximum size.
+ * The cache can be used by the workers of several modules at the same time.
+ */
+final class MemoryCache {
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+    private volatile long maxSize;
+
+    /**
+     * Sets the maximum size of the cache, evicting entries if it is smaller than before.
+     *
+     * @param maxSize the maximum size in bytes
+     */
+    synchronized void setMaxSize(final long maxSize) {
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    /**
+     * Writes the cached output of the given key to the output file, with its source map if one is asked for.
+     *
+     * @param key
+     * @param outputFile
+     * @param sourceMapFile the source map file, or null if source maps are not written
+     * @param sync          true to force the written files to the disk
+     * @return true if the output, and its source map, were cached
+     * @throws IOException
+     */
+    boolean copyTo(final String key, final File outputFile, final File sourceMapFile, final boolean sync)
+            throws IOException {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry == null || sourceMapFile != null && entry.sourceMap == null) {
+            return false;
+        }
+
+        TextFiles.write(outputFile, sync, ByteBuffer.wrap(entry.output));
+        if (sourceMapFile != null) {
+            TextFiles.write(sourceMapFile, sync, ByteBuffer.wrap(entry.sourceMap));
+        }
+        return true;
+    }
+
+    /**
+     * Stores a written output, with its source map. Outputs larger than a quarter of the cache are not stored,
+     * as they would evict most of the others.
+     *
+     * @param key
+     * @param outputFile
+     * @param sourceMapFile the written source map, or null if there is none
+     * @throws IOException
+     */
+    void put(final String key, final File outputFile, final File sourceMapFile) throws IOException {
+        long length = outputFile.length() + (sourceMapFile == null ? 0 : sourceMapFile.length());
+        if (length > maxSize / 4) {
+            return;
+        }
+
+        Entry entry = new Entry(Files.readAllBytes(outputFile.toPath()),
+                sourceMapFile == null ? null : Files.readAllBytes(sourceMapFile.toPath()));
+        synchronized (this) {
+            Entry previous = entries.put(key, entry);
+            size += entry.size() - (previous == null ? 0 : previous.size());
+            evict();
+        }
+    }
+
+    /**
+     * @return the size of the cached outputs in bytes
+     */
+    synchronized long getSize() {
+        return size;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            size -= iterator.next().size();
+            iterator.remove();
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] output;
+        private final byte[] sourceMap;
+
+        Entry(final byte[] output, final byte[] sourceMap) {
+            this.output = output;
+            this.sourceMap = sourceMap;
+        }
+
+        long size() {
+            return output.length + (sourceMap == null ? 0 : sourceMap.length);
+        }
+    }
+}
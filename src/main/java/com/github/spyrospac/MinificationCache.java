@@ -0,0 +1,163 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * On disk cache of minified outputs, kept across builds.
+ * Entries are keyed by the SHA-256 of the source together with the minifier and its options,
+ * so a fresh checkout with new timestamps still hits the cache. The least recently used entries are evicted
+ * when the cache grows over its maximum size.
+ * The cache can be used by several workers at the same time.
+ */
+class MinificationCache {
+    private static final String ENTRY_SUFFIX = ".min";
+
+    private final File directory;
+    private final long maxSize;
+    private final Log log;
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    MinificationCache(final File directory, final long maxSize, final Log log) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.log = log;
+    }
+
+    /**
+     * Computes the cache key of a source.
+     *
+     * @param sourceHash the SHA-256 of the source content
+     * @param minifier   the minifier identity and its options
+     * @return the cache key
+     */
+    static String key(final String sourceHash, final String minifier) {
+        return ContentHash.sha256(sourceHash.getBytes(StandardCharsets.UTF_8), minifier);
+    }
+
+    /**
+     * Copies the cached output of the given key to the output file, if there is one.
+     *
+     * @param key
+     * @param outputFile
+     * @param sync       true to force the written file to the disk
+     * @return true if the output was found in the cache
+     * @throws IOException
+     */
+    boolean copyTo(final String key, final File outputFile, final boolean sync) throws IOException {
+        File entry = getEntry(key);
+        if (!entry.isFile()) {
+            misses.incrementAndGet();
+            return false;
+        }
+
+        TextFiles.copy(entry, outputFile, sync);
+        // keeps the entry recently used
+        entry.setLastModified(System.currentTimeMillis());
+        hits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Stores a minified output, copied from the written output file rather than held on the heap.
+     * The entry is written to a temporary file first, so other workers never see a partial entry.
+     *
+     * @param key
+     * @param outputFile
+     * @throws IOException
+     */
+    void put(final String key, final File outputFile) throws IOException {
+        File entry = getEntry(key);
+        FileUtils.forceMkdir(entry.getParentFile());
+
+        File temp = File.createTempFile(key, ".tmp", entry.getParentFile());
+        try {
+            Files.copy(outputFile.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache is within its maximum size.
+     */
+    void evict() {
+        if (!directory.isDirectory()) {
+            return;
+        }
+
+        List<File> entries = new ArrayList<>(
+                FileUtils.listFiles(directory, new String[]{ENTRY_SUFFIX.substring(1)}, true));
+        long size = 0;
+        for (File entry : entries) {
+            size += entry.length();
+        }
+
+        if (size <= maxSize) {
+            return;
+        }
+
+        Collections.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+
+        int evicted = 0;
+        for (File file : entries) {
+            if (size <= maxSize) {
+                break;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                size -= length;
+                evicted++;
+            }
+        }
+        log.debug("Evicted " + evicted + " minification cache entries.");
+    }
+
+    int getHits() {
+        return hits.get();
+    }
+
+    int getMisses() {
+        return misses.get();
+    }
+
+    private File getEntry(final String key) {
+        return new File(new File(directory, key.substring(0, 2)), key + ENTRY_SUFFIX);
+    }
+}
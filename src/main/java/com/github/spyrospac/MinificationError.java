@@ -0,0 +1,94 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+/**
+ * A source or a bundle that could not be minified, as listed at the end of the run and in uglify-errors.json.
+ */
+final class MinificationError {
+    private final String file;
+    private final String bundle;
+    private final int line;
+    private final int column;
+    private final String message;
+
+    private MinificationError(final String file, final String bundle, final int line, final int column,
+                              final String message) {
+        this.file = file;
+        this.bundle = bundle;
+        this.line = line;
+        this.column = column;
+        this.message = message;
+    }
+
+    /**
+     * @param path    the path of the source, or the name of the bundle
+     * @param bundle  true if the path is the name of a bundle
+     * @param failure
+     * @return the error, at the position reported by the minifier if any
+     */
+    static MinificationError of(final String path, final boolean bundle, final Exception failure) {
+        String message = failure.getMessage() == null ? failure.getClass().getName() : failure.getMessage();
+        if (!(failure instanceof MinificationException)) {
+            return new MinificationError(path, bundle ? path : null, 0, 0, message);
+        }
+        MinificationException exception = (MinificationException) failure;
+        // the source of a bundle that failed, as named by the minifier
+        String file = bundle && exception.getSource() != null ? exception.getSource() : path;
+        return new MinificationError(file, bundle ? path : null, exception.getLine(), exception.getColumn(),
+                message);
+    }
+
+    String getFile() {
+        return file;
+    }
+
+    /**
+     * @return the name of the bundle of the file, or null for a source minified alone
+     */
+    String getBundle() {
+        return bundle;
+    }
+
+    /**
+     * @return the line of the error, 0 if unknown
+     */
+    int getLine() {
+        return line;
+    }
+
+    /**
+     * @return the column of the error, 0 if unknown
+     */
+    int getColumn() {
+        return column;
+    }
+
+    String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return the error as compilers print it, e.g. "js/app.js:12:4: Unexpected token: punc (;)"
+     */
+    @Override
+    public String toString() {
+        return (bundle != null && !bundle.equals(file) ? bundle + ": " : "") + file
+                + (line > 0 ? ":" + line + ":" + column : "") + ": " + message;
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.JavaScriptException;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+
+/**
+ * Error of a minifier about a source it could not minify, e.g. a syntax error, with the position the minifier
+ * reported. Thrown instead of the {@link JavaScriptException} of the libraries, whose message is the thrown object.
+ */
+class MinificationException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final String source;
+    private final int line;
+    private final int column;
+
+    /**
+     * @param message
+     * @param source  the name of the source reported by the minifier, e.g. a source of a bundle, or null
+     * @param line    the line of the error, 0 if unknown
+     * @param column  the column of the error, 0 if unknown
+     */
+    MinificationException(final String message, final String source, final int line, final int column) {
+        super(message);
+        this.source = source;
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Reads the error thrown by UglifyJS (message, filename, line and col) or CSSO (message, line and column).
+     *
+     * @param error the thrown JavaScript value
+     * @return the exception
+     */
+    static MinificationException of(final Object error) {
+        if (!(error instanceof Scriptable)) {
+            return new MinificationException(Context.toString(error), null, 0, 0);
+        }
+        Scriptable object = (Scriptable) error;
+        Object message = ScriptableObject.getProperty(object, "message");
+        Object column = ScriptableObject.getProperty(object, "col");
+        if (column == Scriptable.NOT_FOUND) {
+            column = ScriptableObject.getProperty(object, "column");
+        }
+        return new MinificationException(message == Scriptable.NOT_FOUND ? Context.toString(error)
+                : Context.toString(message), string(ScriptableObject.getProperty(object, "filename")),
+                number(ScriptableObject.getProperty(object, "line")), number(column));
+    }
+
+    private static String string(final Object value) {
+        return value instanceof CharSequence ? value.toString() : null;
+    }
+
+    private static int number(final Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    String getSource() {
+        return source;
+    }
+
+    int getLine() {
+        return line;
+    }
+
+    int getColumn() {
+        return column;
+    }
+}
@@ -0,0 +1,483 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Timing, size and throughput metrics of a run: the time spent in each phase, and the sizes and durations of
+ * every minified file. The report is logged and can be written as JSON and CSV, to be compared across builds.
+ * Phase times are summed over the worker threads, so with several threads they may exceed the elapsed time.
+ * The heap allocated for each file and the peak heap of the run are reported too, when the JVM measures them.
+ */
+class MinificationReport {
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Phases of the minification of a file.
+     */
+    enum Phase {
+        ENGINE_INIT("engineInit", "engine init"),
+        READ("read", "read"),
+        MINIFY("minify", "minify"),
+        WRITE("write", "write"),
+        COMPRESS("compress", "compress");
+
+        private final String key;
+        private final String label;
+
+        Phase(String key, String label) {
+            this.key = key;
+            this.label = label;
+        }
+    }
+
+    private final List<MinificationTask> tasks = new ArrayList<>();
+    private int unchanged;
+    private int threads;
+    private long elapsedNanos;
+    private DaemonClient daemon;
+    private String jsPreset;
+
+    /**
+     * Starts a report, resetting the peak usage of the heap memory pools.
+     */
+    MinificationReport() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * @return the heap allocated so far by the current thread, or -1 if the JVM does not measure it
+     */
+    static long threadAllocatedBytes() {
+        try {
+            if (THREADS instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+                if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                    return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+                }
+            }
+        } catch (LinkageError e) {
+            // not a HotSpot JVM
+        }
+        return -1;
+    }
+
+    void addTasks(List<MinificationTask> tasks) {
+        this.tasks.addAll(tasks);
+    }
+
+    void setUnchanged(int unchanged) {
+        this.unchanged = unchanged;
+    }
+
+    void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @param jsPreset the preset of the UglifyJS options, reported with the sizes of the JavaScript files
+     */
+    void setJsPreset(String jsPreset) {
+        this.jsPreset = jsPreset;
+    }
+
+    /**
+     * @param daemon the client of the minification daemon, or null if no daemon is used
+     */
+    void setDaemon(DaemonClient daemon) {
+        this.daemon = daemon;
+    }
+
+    /**
+     * Logs the time of each phase, the total sizes and the slowest files.
+     *
+     * @param log
+     * @param slowestFiles the number of slowest files to list
+     */
+    void log(Log log, int slowestFiles) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        StringBuilder phases = new StringBuilder("Phases:");
+        for (Phase phase : Phase.values()) {
+            phases.append(phase == Phase.ENGINE_INIT ? " " : ", ").append(phase.label).append(' ')
+                    .append(millis(getNanos(phase))).append(" ms");
+        }
+        log.info(phases.append(" (summed over ").append(threads).append(" thread(s)).").toString());
+
+        long inputBytes = getInputBytes();
+        long outputBytes = getOutputBytes();
+        log.info(String.format(Locale.ROOT, "Minified %d bytes into %d bytes (ratio %.3f), %.1f KB/s.",
+                inputBytes, outputBytes, ratio(inputBytes, outputBytes), getThroughput() / 1024));
+        long jsInputBytes = getJsBytes(false);
+        if (jsInputBytes > 0) {
+            long jsOutputBytes = getJsBytes(true);
+            log.info(String.format(Locale.ROOT, "JavaScript with the %s preset: %d bytes into %d bytes (ratio %.3f).",
+                    jsPreset, jsInputBytes, jsOutputBytes, ratio(jsInputBytes, jsOutputBytes)));
+        }
+        int deduplicated = getDeduplicated();
+        if (deduplicated > 0) {
+            log.info("Deduplicated " + deduplicated + " identical source(s), their outputs were copied.");
+        }
+        int alreadyMinified = getAlreadyMinified();
+        if (alreadyMinified > 0) {
+            log.info("Copied " + alreadyMinified + " already minified source(s) without minifying them.");
+        }
+        int timedOut = getTimedOut();
+        if (timedOut > 0) {
+            log.warn("Copied " + timedOut + " source(s) unminified after the file timeout.");
+        }
+        if (daemon != null && daemon.getFiles() > 0) {
+            log.info(String.format(Locale.ROOT, "Minification daemon: %d file(s) in %.1f ms round trip, "
+                            + "of which %.1f ms minifying in the daemon.", daemon.getFiles(),
+                    millis(daemon.getRoundTripNanos()), millis(daemon.getDaemonNanos())));
+        }
+        MinificationTask largest = getLargestAllocation();
+        log.info(String.format(Locale.ROOT, "Peak heap %.1f MB", getPeakHeapBytes() / 1048576.0)
+                + (largest == null ? "." : String.format(Locale.ROOT,
+                ", largest allocation %.1f MB for %s (%.1f times its size).", largest.getAllocatedBytes() / 1048576.0,
+                largest.getPath(), ratio(largest.getInputBytes(), largest.getAllocatedBytes()))));
+
+        if (slowestFiles > 0) {
+            log.info("Slowest files:");
+            List<MinificationTask> slowest = new ArrayList<>(tasks);
+            Collections.sort(slowest, new Comparator<MinificationTask>() {
+                @Override
+                public int compare(MinificationTask a, MinificationTask b) {
+                    return Long.compare(b.getTotalNanos(), a.getTotalNanos());
+                }
+            });
+            for (MinificationTask task : slowest.subList(0, Math.min(slowestFiles, slowest.size()))) {
+                log.info(String.format(Locale.ROOT, "  %10.1f ms  %s (%d -> %d bytes%s)",
+                        millis(task.getTotalNanos()), task.getPath(), task.getInputBytes(), task.getOutputBytes(),
+                        task.isCached() ? ", cached" : task.isDeduplicated() ? ", deduplicated"
+                                : task.isAlreadyMinified() ? ", already minified"
+                                : task.isTimedOut() ? ", timed out" : ""));
+            }
+        }
+    }
+
+    /**
+     * Writes the report as a JSON document, with the totals and an entry per file.
+     *
+     * @param file
+     * @throws IOException
+     */
+    void writeJson(File file) throws IOException {
+        StringWriter text = new StringWriter();
+        try (JsonWriter json = new JsonWriter(text)) {
+            json.beginObject()
+                    .name("elapsedMillis").value(millis(elapsedNanos))
+                    .name("threads").value(threads)
+                    .name("minified").value(tasks.size())
+                    .name("unchanged").value(unchanged)
+                    .name("cached").value(getCached())
+                    .name("deduplicated").value(getDeduplicated())
+                    .name("alreadyMinified").value(getAlreadyMinified())
+                    .name("timedOut").value(getTimedOut())
+                    .name("failed").value(getFailed())
+                    .name("inputBytes").value(getInputBytes())
+                    .name("outputBytes").value(getOutputBytes())
+                    .name("ratio").value(ratio(getInputBytes(), getOutputBytes()))
+                    .name("jsPreset").value(jsPreset)
+                    .name("jsInputBytes").value(getJsBytes(false))
+                    .name("jsOutputBytes").value(getJsBytes(true))
+                    .name("throughputBytesPerSecond").value(getThroughput())
+                    .name("peakHeapBytes").value(getPeakHeapBytes());
+
+            json.name("phaseMillis").beginObject();
+            for (Phase phase : Phase.values()) {
+                json.name(phase.key).value(millis(getNanos(phase)));
+            }
+            json.endObject();
+
+            if (daemon != null) {
+                json.name("daemon").beginObject()
+                        .name("files").value(daemon.getFiles())
+                        .name("roundTripMillis").value(millis(daemon.getRoundTripNanos()))
+                        .name("daemonMillis").value(millis(daemon.getDaemonNanos()))
+                        .endObject();
+            }
+
+            json.name("files").beginArray();
+            for (MinificationTask task : tasks) {
+                json.beginObject()
+                        .name("path").value(task.getPath())
+                        .name("type").value(task.isJavaScript() ? "js" : "css")
+                        .name("inputBytes").value(task.getInputBytes())
+                        .name("outputBytes").value(task.getOutputBytes())
+                        .name("ratio").value(ratio(task.getInputBytes(), task.getOutputBytes()))
+                        .name("cached").value(task.isCached())
+                        .name("deduplicated").value(task.isDeduplicated())
+                        .name("alreadyMinified").value(task.isAlreadyMinified())
+                        .name("timedOut").value(task.isTimedOut())
+                        .name("failed").value(task.getFailure() != null)
+                        .name("allocatedBytes").value(task.getAllocatedBytes())
+                        .name("totalMillis").value(millis(task.getTotalNanos()));
+                json.name("phaseMillis").beginObject();
+                for (Phase phase : Phase.values()) {
+                    json.name(phase.key).value(millis(task.getNanos(phase)));
+                }
+                json.endObject().endObject();
+            }
+            json.endArray().endObject();
+        }
+        write(file, text);
+    }
+
+    /**
+     * Writes the errors of the run as JSON, with the position reported by the minifier when it is known.
+     *
+     * @param file
+     * @param errors
+     * @throws IOException
+     */
+    void writeErrors(File file, List<MinificationError> errors) throws IOException {
+        StringWriter text = new StringWriter();
+        try (JsonWriter json = new JsonWriter(text)) {
+            json.beginObject().name("errors").beginArray();
+            for (MinificationError error : errors) {
+                json.beginObject()
+                        .name("file").value(error.getFile())
+                        .name("bundle").value(error.getBundle())
+                        .name("line").value(error.getLine())
+                        .name("column").value(error.getColumn())
+                        .name("message").value(error.getMessage())
+                        .endObject();
+            }
+            json.endArray().endObject();
+        }
+        write(file, text);
+    }
+
+    /**
+     * Writes the report as CSV, with a line per file.
+     *
+     * @param file
+     * @throws IOException
+     */
+    void writeCsv(File file) throws IOException {
+        StringWriter out = new StringWriter();
+        out.write("path,type,inputBytes,outputBytes,ratio,cached,deduplicated,alreadyMinified,timedOut,failed,"
+                + "allocatedBytes,totalMillis");
+        for (Phase phase : Phase.values()) {
+            out.write("," + phase.key + "Millis");
+        }
+        out.write("\n");
+
+        for (MinificationTask task : tasks) {
+            out.write(csv(task.getPath()) + "," + (task.isJavaScript() ? "js" : "css") + ","
+                    + task.getInputBytes() + "," + task.getOutputBytes() + ","
+                    + String.format(Locale.ROOT, "%.4f", ratio(task.getInputBytes(), task.getOutputBytes())) + ","
+                    + task.isCached() + "," + task.isDeduplicated() + "," + task.isAlreadyMinified() + ","
+                    + task.isTimedOut() + ","
+                    + (task.getFailure() != null) + ","
+                    + task.getAllocatedBytes() + ","
+                    + millis(task.getTotalNanos()));
+            for (Phase phase : Phase.values()) {
+                out.write("," + millis(task.getNanos(phase)));
+            }
+            out.write("\n");
+        }
+        write(file, out);
+    }
+
+    private long getNanos(Phase phase) {
+        long nanos = 0;
+        for (MinificationTask task : tasks) {
+            nanos += task.getNanos(phase);
+        }
+        return nanos;
+    }
+
+    private long getInputBytes() {
+        long bytes = 0;
+        for (MinificationTask task : tasks) {
+            bytes += task.getInputBytes();
+        }
+        return bytes;
+    }
+
+    private long getOutputBytes() {
+        long bytes = 0;
+        for (MinificationTask task : tasks) {
+            bytes += task.getOutputBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * @param output true for the output sizes, false for the input sizes
+     * @return the size of the JavaScript files minified with the UglifyJS options, the copied ones excluded
+     */
+    private long getJsBytes(boolean output) {
+        long bytes = 0;
+        for (MinificationTask task : tasks) {
+            if (task.isJavaScript() && !task.isAlreadyMinified() && !task.isTimedOut() && task.getFailure() == null) {
+                bytes += output ? task.getOutputBytes() : task.getInputBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the file for which the most heap was allocated, or null if the JVM does not measure it
+     */
+    private MinificationTask getLargestAllocation() {
+        MinificationTask largest = null;
+        for (MinificationTask task : tasks) {
+            if (task.getAllocatedBytes() > 0
+                    && (largest == null || task.getAllocatedBytes() > largest.getAllocatedBytes())) {
+                largest = task;
+            }
+        }
+        return largest;
+    }
+
+    /**
+     * @return the sum of the peak usage of the heap memory pools since the report started, an upper bound of
+     * the peak heap as the pools may peak at different times
+     */
+    private static long getPeakHeapBytes() {
+        long bytes = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                bytes += pool.getPeakUsage().getUsed();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the source bytes minified per second of the minify phase, copied files excluded
+     */
+    private double getThroughput() {
+        long bytes = 0;
+        long nanos = 0;
+        for (MinificationTask task : tasks) {
+            if (!task.isCached() && !task.isDeduplicated() && !task.isAlreadyMinified()) {
+                bytes += task.getInputBytes();
+                nanos += task.getNanos(Phase.MINIFY);
+            }
+        }
+        return nanos == 0 ? 0 : bytes * 1e9 / nanos;
+    }
+
+    private int getCached() {
+        int cached = 0;
+        for (MinificationTask task : tasks) {
+            if (task.isCached()) {
+                cached++;
+            }
+        }
+        return cached;
+    }
+
+    private int getDeduplicated() {
+        int deduplicated = 0;
+        for (MinificationTask task : tasks) {
+            if (task.isDeduplicated()) {
+                deduplicated++;
+            }
+        }
+        return deduplicated;
+    }
+
+    private int getAlreadyMinified() {
+        int alreadyMinified = 0;
+        for (MinificationTask task : tasks) {
+            if (task.isAlreadyMinified()) {
+                alreadyMinified++;
+            }
+        }
+        return alreadyMinified;
+    }
+
+    private int getTimedOut() {
+        int timedOut = 0;
+        for (MinificationTask task : tasks) {
+            if (task.isTimedOut()) {
+                timedOut++;
+            }
+        }
+        return timedOut;
+    }
+
+    private int getFailed() {
+        int failed = 0;
+        for (MinificationTask task : tasks) {
+            if (task.getFailure() != null) {
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    private static double ratio(long inputBytes, long outputBytes) {
+        return inputBytes == 0 ? 0 : (double) outputBytes / inputBytes;
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1e3) / 1e3;
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Writes a report through {@link TextFiles}, so that an interrupted build never leaves it truncated.
+     *
+     * @param file
+     * @param text
+     * @throws IOException
+     */
+    private static void write(File file, StringWriter text) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Could not create " + parent.getPath());
+        }
+        TextFiles.write(file, false, text.toString());
+    }
+}
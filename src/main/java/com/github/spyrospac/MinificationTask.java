@@ -0,0 +1,251 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import java.io.File;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A source file to minify, its output file and the outcome of its minification.
+ */
+class MinificationTask {
+    private final File inputFile;
+    private final File outputFile;
+    private final String path;
+    private final boolean javaScript;
+    private final String options;
+
+    private File publishedFile;
+    private String hash;
+    private Exception failure;
+
+    private boolean cached;
+    private boolean deduplicated;
+    private boolean alreadyMinified;
+    private boolean timedOut;
+    private final CountDownLatch completion = new CountDownLatch(1);
+    private long inputBytes;
+    private long outputBytes;
+    private long allocatedBytes = -1;
+    private final long[] phaseNanos = new long[MinificationReport.Phase.values().length];
+
+    /**
+     * @param inputFile  the source file
+     * @param outputFile the minified file
+     * @param path       the path of the source relative to the sources directory
+     * @param javaScript true for a JavaScript source, false for CSS
+     * @param options    the minifier identity and its options
+     */
+    MinificationTask(File inputFile, File outputFile, String path, boolean javaScript, String options) {
+        this.inputFile = inputFile;
+        this.outputFile = outputFile;
+        this.path = path;
+        this.javaScript = javaScript;
+        this.options = options;
+    }
+
+    File getInputFile() {
+        return inputFile;
+    }
+
+    File getOutputFile() {
+        return outputFile;
+    }
+
+    /**
+     * @return the minified file as it is served, the output file renamed after its hash if outputs are hashed
+     */
+    File getPublishedFile() {
+        return publishedFile == null ? outputFile : publishedFile;
+    }
+
+    void setPublishedFile(File publishedFile) {
+        this.publishedFile = publishedFile;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    boolean isJavaScript() {
+        return javaScript;
+    }
+
+    String getOptions() {
+        return options;
+    }
+
+    /**
+     * @return the SHA-256 of the source, or null if it was not read yet
+     */
+    String getHash() {
+        return hash;
+    }
+
+    void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    Exception getFailure() {
+        return failure;
+    }
+
+    void setFailure(Exception failure) {
+        this.failure = failure;
+    }
+
+    /**
+     * @return true if the output was copied from the minification cache
+     */
+    boolean isCached() {
+        return cached;
+    }
+
+    void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    /**
+     * @return true if the output was copied from the output of an identical source of the run
+     */
+    boolean isDeduplicated() {
+        return deduplicated;
+    }
+
+    void setDeduplicated(boolean deduplicated) {
+        this.deduplicated = deduplicated;
+    }
+
+    /**
+     * @return true if the source was minified already and was copied
+     */
+    boolean isAlreadyMinified() {
+        return alreadyMinified;
+    }
+
+    void setAlreadyMinified(boolean alreadyMinified) {
+        this.alreadyMinified = alreadyMinified;
+    }
+
+    /**
+     * @return true if the minification took longer than the file timeout and the source was copied
+     */
+    boolean isTimedOut() {
+        return timedOut;
+    }
+
+    void setTimedOut(boolean timedOut) {
+        this.timedOut = timedOut;
+    }
+
+    /**
+     * Marks the task as done, successfully or not, releasing the tasks waiting for its output.
+     */
+    void complete() {
+        completion.countDown();
+    }
+
+    boolean isComplete() {
+        return completion.getCount() == 0;
+    }
+
+    /**
+     * Waits until the task is done, for an identical source to copy its output.
+     *
+     * @param timeoutMillis the maximum time to wait
+     * @return true if the task is done, false if the timeout elapsed first
+     * @throws InterruptedIOException if the thread is interrupted
+     */
+    boolean awaitCompletion(long timeoutMillis) throws InterruptedIOException {
+        try {
+            return completion.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + path + ".");
+        }
+    }
+
+    long getInputBytes() {
+        return inputBytes;
+    }
+
+    void setInputBytes(long inputBytes) {
+        this.inputBytes = inputBytes;
+    }
+
+    long getOutputBytes() {
+        return outputBytes;
+    }
+
+    void setOutputBytes(long outputBytes) {
+        this.outputBytes = outputBytes;
+    }
+
+    /**
+     * @return the heap allocated by the worker thread for this file, or -1 if the JVM does not measure it
+     */
+    long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    void setAllocatedBytes(long allocatedBytes) {
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * @param phase
+     * @return the time spent by this file in the phase, in nanoseconds
+     */
+    long getNanos(MinificationReport.Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * Adds the time spent in a phase since the given start.
+     *
+     * @param phase
+     * @param start the {@link System#nanoTime()} at the start of the phase
+     */
+    void addNanos(MinificationReport.Phase phase, long start) {
+        phaseNanos[phase.ordinal()] += System.nanoTime() - start;
+    }
+
+    /**
+     * Adds the share of this file in the time spent on a batch of files, in proportion to its size.
+     *
+     * @param phase
+     * @param nanos      the time spent on the batch
+     * @param batchBytes the size of the files of the batch
+     */
+    void addBatchNanos(MinificationReport.Phase phase, long nanos, long batchBytes) {
+        phaseNanos[phase.ordinal()] += batchBytes == 0 ? 0 : nanos * inputBytes / batchBytes;
+    }
+
+    /**
+     * @return the time spent by this file in all phases, in nanoseconds
+     */
+    long getTotalNanos() {
+        long total = 0;
+        for (long nanos : phaseNanos) {
+            total += nanos;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+/**
+ * Fast check of sources that are minified already, e.g. vendor bundles not named *.min.js, so that they are copied
+ * instead of being minified again, which takes long and can even make them larger.
+ * The code is scanned once, without parsing it: minified code is mostly made of long lines, with little whitespace.
+ * A sourceMappingURL comment, usually added by a bundler or a minifier, makes the check less strict.
+ * A source wrongly taken for minified code is copied as it is, so the check errs on the side of copying too little.
+ */
+final class MinifiedCode {
+    /**
+     * Length under which a source is always minified, too short to tell and cheap to minify.
+     */
+    static final int MIN_LENGTH = 1024;
+
+    private static final int LONG_LINE = 500;
+    private static final double MAX_WHITESPACE_RATIO = 0.1;
+    private static final double MIN_LONG_LINES_RATIO = 0.8;
+    private static final double MIN_LONG_LINES_RATIO_WITH_MAP = 0.5;
+
+    private MinifiedCode() {
+    }
+
+    /**
+     * Checks if a source looks minified: less than 10% of whitespace, and at least 80% of its characters on lines
+     * of 500 characters or more, or 50% if it links a source map.
+     *
+     * @param code
+     * @return true if the source is minified already
+     */
+    static boolean isMinified(final String code) {
+        int length = code.length();
+        if (length < MIN_LENGTH) {
+            return false;
+        }
+
+        long whitespace = 0;
+        long longLines = 0;
+        int lineStart = 0;
+        for (int i = 0; i < length; i++) {
+            char c = code.charAt(i);
+            if (c == '\n') {
+                if (i - lineStart >= LONG_LINE) {
+                    longLines += i - lineStart;
+                }
+                lineStart = i + 1;
+                whitespace++;
+            } else if (c == ' ' || c == '\t' || c == '\r') {
+                whitespace++;
+            }
+        }
+        if (length - lineStart >= LONG_LINE) {
+            longLines += length - lineStart;
+        }
+
+        if (whitespace > length * MAX_WHITESPACE_RATIO) {
+            return false;
+        }
+        double longLinesRatio = (double) longLines / length;
+        return longLinesRatio >= MIN_LONG_LINES_RATIO
+                || longLinesRatio >= MIN_LONG_LINES_RATIO_WITH_MAP && SourceMaps.isLinked(code);
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import java.io.Closeable;
+
+/**
+ * Minifies the source of a file. A minifier is created by a {@link MinifierProvider} for one worker thread
+ * and is closed by the same thread, so implementations do not need to be thread safe.
+ */
+public interface Minifier extends Closeable {
+
+    /**
+     * Minifies a source.
+     *
+     * @param name the path of the source, used in diagnostics
+     * @param code the source code
+     * @return the minified code and its diagnostics
+     */
+    MinifierResult minify(String name, String code);
+
+    /**
+     * Releases the resources of the minifier, without throwing checked exceptions.
+     */
+    @Override
+    void close();
+}
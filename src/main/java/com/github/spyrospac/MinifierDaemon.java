@@ -0,0 +1,403 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minification daemon, keeping warm minifier engines in a long running JVM and minifying the sources sent by the
+ * plugin over a loopback socket, so that the modules of a reactor and parallel builds on the same machine do not
+ * start the engines again. Every connection minifies with the backend and the options given when it connects,
+ * on a thread of its own, taking an engine from the pools of the daemon. The number of threads is bounded: a
+ * connection beyond it is refused with an {@link #ERROR} reply at once, and its client minifies in process rather
+ * than waiting for a connection that may be held by a worker waiting for it.
+ * <p>
+ * The messages, strings being written as their UTF-8 length (-1 for null) and bytes. A length or a count out of
+ * bounds closes the connection:
+ * <ul>
+ * <li>client: {@link #MAGIC}, type, backend name, backend identity, mangle, optimization level, source map,
+ * UglifyJS options, file timeout in milliseconds</li>
+ * <li>daemon: {@link #OK} and whether bundles are minified in a single call, or {@link #ERROR} and a message</li>
+ * <li>client: {@link #MINIFY}, name, code, input source map, or {@link #BUNDLE}, count, names and codes,
+ * or {@link #CLOSE}</li>
+ * <li>daemon: {@link #OK}, code, source map, warning count, warnings and the minification time in nanoseconds,
+ * {@link #FAILED} and the message, source, line and column of a {@link MinificationException},
+ * {@link #TIMEOUT} and the message of the {@link Watchdog.Timeout} stopping a source, or {@link #ERROR}
+ * and a message</li>
+ * </ul>
+ */
+final class MinifierDaemon implements Closeable {
+    /**
+     * Port of the daemon unless configured otherwise.
+     */
+    static final int DEFAULT_PORT = 47321;
+
+    static final int MAGIC = 0x55474c32;
+    static final int CLOSE = 0;
+    static final int MINIFY = 1;
+    static final int BUNDLE = 2;
+    static final int OK = 0;
+    static final int ERROR = 1;
+    static final int FAILED = 2;
+    static final int TIMEOUT = 3;
+
+    private static final int ACCEPT_TIMEOUT = 500;
+
+    // larger strings are not sources of a front end
+    private static final int MAX_STRING_BYTES = 256 * 1024 * 1024;
+    private static final int MAX_COUNT = 64 * 1024;
+
+    private final Log log;
+    private final ServerSocket serverSocket;
+    private final int threads;
+    // a permit per connection served, the threads of the pool being bounded by them
+    private final Semaphore slots;
+    private final ExecutorService connections = Executors.newCachedThreadPool(new NamedThreadFactory("uglify-daemon"));
+    private final Map<String, MinifierProvider> providers = PluginSession.getProviders();
+
+    private final AtomicInteger files = new AtomicInteger();
+    private final AtomicLong nanos = new AtomicLong();
+
+    /**
+     * Binds the daemon to a port of the loopback address.
+     *
+     * @param port    the port, or 0 for any free port
+     * @param threads the number of connections served at once
+     * @param log
+     * @throws IOException if the port is taken, e.g. by a running daemon
+     */
+    MinifierDaemon(final int port, final int threads, final Log log) throws IOException {
+        this.log = log;
+        this.threads = threads;
+        slots = new Semaphore(threads);
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        serverSocket.setSoTimeout(ACCEPT_TIMEOUT);
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return the number of files minified for the clients
+     */
+    int getFiles() {
+        return files.get();
+    }
+
+    /**
+     * Compiles an engine of every backend, kept idle in its pool for the first client.
+     *
+     * @param options
+     */
+    void warmUp(final MinifierOptions options) {
+        for (MinifierProvider provider : providers.values()) {
+            provider.createMinifier(options, log).close();
+        }
+    }
+
+    /**
+     * Accepts clients until the daemon is closed or the thread is interrupted.
+     *
+     * @throws IOException
+     */
+    void serve() throws IOException {
+        while (!Thread.currentThread().isInterrupted()) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketTimeoutException e) {
+                continue;
+            } catch (SocketException e) {
+                if (serverSocket.isClosed()) {
+                    return;
+                }
+                throw e;
+            }
+            try {
+                // a connection closing as this one arrives releases its permit a moment later
+                if (!slots.tryAcquire(ACCEPT_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    refuseClient(socket);
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                socket.close();
+                Thread.currentThread().interrupt();
+                return;
+            }
+            connections.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        serveClient(socket);
+                    } finally {
+                        slots.release();
+                    }
+                }
+            });
+        }
+    }
+
+    private void serveClient(final Socket socket) {
+        Minifier minifier = null;
+        int clientFiles = 0;
+        long clientNanos = 0;
+        try (Socket client = socket) {
+            client.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()));
+
+            if (in.readInt() != MAGIC) {
+                log.warn("Ignored a connection from an unknown client.");
+                return;
+            }
+            String type = readString(in);
+            String name = readString(in);
+            String identity = readString(in);
+            MinifierOptions options = readOptions(in);
+            long timeoutMillis = in.readLong();
+
+            MinifierProvider provider = providers.get(type + ":" + name);
+            if (provider == null || !provider.getIdentity(options).equals(identity)) {
+                out.writeByte(ERROR);
+                writeString(out, provider == null ? "no " + type + " minifier named \"" + name + "\""
+                        : "the daemon runs " + provider.getIdentity(options) + ", not " + identity);
+                out.flush();
+                return;
+            }
+            minifier = provider.createMinifier(options, log);
+            out.writeByte(OK);
+            out.writeBoolean(minifier instanceof BundleMinifier);
+            out.flush();
+
+            for (int request = in.readByte(); request != CLOSE; request = in.readByte()) {
+                long start = System.nanoTime();
+                MinifierResult result;
+                try {
+                    result = minify(minifier, request, in, timeoutMillis);
+                } catch (Watchdog.Timeout e) {
+                    // the engine of the minifier is dropped, as in process
+                    minifier.close();
+                    minifier = provider.createMinifier(options, log);
+                    out.writeByte(TIMEOUT);
+                    writeString(out, e.getMessage());
+                    out.flush();
+                    continue;
+                } catch (MinificationException e) {
+                    out.writeByte(FAILED);
+                    writeString(out, e.getMessage());
+                    writeString(out, e.getSource());
+                    out.writeInt(e.getLine());
+                    out.writeInt(e.getColumn());
+                    out.flush();
+                    continue;
+                } catch (RuntimeException e) {
+                    out.writeByte(ERROR);
+                    writeString(out, String.valueOf(e.getMessage()));
+                    out.flush();
+                    continue;
+                }
+                long elapsed = System.nanoTime() - start;
+                // counted before the reply, so that a client sees its files counted
+                files.incrementAndGet();
+                nanos.addAndGet(elapsed);
+                clientFiles++;
+                clientNanos += elapsed;
+
+                out.writeByte(OK);
+                writeString(out, result.getCode());
+                writeString(out, result.getSourceMap());
+                out.writeInt(result.getWarnings().size());
+                for (String warning : result.getWarnings()) {
+                    writeString(out, warning);
+                }
+                out.writeLong(elapsed);
+                out.flush();
+            }
+        } catch (EOFException e) {
+            log.debug("A client disconnected without closing.");
+        } catch (IOException e) {
+            log.warn("Failure to serve a client: " + e.getMessage());
+        } finally {
+            if (minifier != null) {
+                minifier.close();
+            }
+        }
+
+        if (clientFiles > 0) {
+            log.info(String.format(Locale.ROOT, "Minified %d file(s) for a client in %.1f ms, %d file(s) in %.1f ms "
+                    + "since the daemon started.", clientFiles, clientNanos / 1e6, files.get(), nanos.get() / 1e6));
+        }
+    }
+
+    /**
+     * Reads the handshake of a client while every thread is busy, and replies {@link #ERROR}, so that the client
+     * minifies in process.
+     *
+     * @param socket
+     */
+    private void refuseClient(final Socket socket) {
+        try (Socket client = socket) {
+            client.setSoTimeout(ACCEPT_TIMEOUT);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(client.getOutputStream()));
+            if (in.readInt() != MAGIC) {
+                return;
+            }
+            // the whole handshake is read, so that the reply is not lost in a reset of the connection
+            for (int i = 0; i < 3; i++) {
+                readString(in);
+            }
+            readOptions(in);
+            in.readLong();
+            out.writeByte(ERROR);
+            writeString(out, "the daemon is busy with " + threads + " client(s)");
+            out.flush();
+        } catch (IOException e) {
+            log.debug("Failure to refuse a client: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the minifier options of the handshake.
+     *
+     * @param in
+     * @return the options
+     * @throws IOException
+     */
+    private static MinifierOptions readOptions(final DataInputStream in) throws IOException {
+        MinifierOptions options = new MinifierOptions();
+        options.setMangle(in.readBoolean());
+        options.setOptimizationLevel(in.readInt());
+        options.setSourceMap(in.readBoolean());
+        options.setJsOptions(readString(in));
+        return options;
+    }
+
+    /**
+     * Reads a request and minifies its sources, stopped by the {@link Watchdog} after the timeout of the client.
+     *
+     * @param minifier
+     * @param request       {@link #MINIFY} or {@link #BUNDLE}
+     * @param in
+     * @param timeoutMillis the file timeout of the client, 0 for no limit
+     * @return the minified code
+     * @throws IOException
+     */
+    private MinifierResult minify(final Minifier minifier, final int request, final DataInputStream in,
+                                  final long timeoutMillis) throws IOException {
+        if (request == BUNDLE) {
+            int count = readCount(in);
+            Map<String, String> sources = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                sources.put(readString(in), readString(in));
+            }
+            Watchdog.watch("a bundle of " + count + " source(s)", timeoutMillis, 0, log);
+            try {
+                return ((BundleMinifier) minifier).minifyBundle(sources);
+            } finally {
+                Watchdog.unwatch();
+            }
+        }
+        if (request != MINIFY) {
+            throw new IOException("Unknown request " + request + ".");
+        }
+
+        String name = readString(in);
+        String code = readString(in);
+        String inputSourceMap = readString(in);
+        Watchdog.watch(name, timeoutMillis, 0, log);
+        try {
+            return minifier instanceof SourceMapMinifier
+                    ? ((SourceMapMinifier) minifier).minify(name, code, inputSourceMap) : minifier.minify(name, code);
+        } finally {
+            Watchdog.unwatch();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+
+    static void writeString(final DataOutputStream out, final String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(final DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Invalid string length " + length + ".");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static List<String> readStrings(final DataInputStream in) throws IOException {
+        int count = readCount(in);
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    private static int readCount(final DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > MAX_COUNT) {
+            throw new IOException("Invalid count " + count + ".");
+        }
+        return count;
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+/**
+ * Plugin options passed to the minifier backends. Backends ignore the options they do not support.
+ */
+public class MinifierOptions {
+    private boolean mangle = true;
+    private int optimizationLevel = 9;
+    private boolean sourceMap;
+    private String jsOptions;
+
+    /**
+     * @return true if local names should be mangled (JavaScript only)
+     */
+    public boolean isMangle() {
+        return mangle;
+    }
+
+    public void setMangle(boolean mangle) {
+        this.mangle = mangle;
+    }
+
+    /**
+     * @return the optimization level of script engines that compile to bytecode, -1 for an interpreter
+     */
+    public int getOptimizationLevel() {
+        return optimizationLevel;
+    }
+
+    public void setOptimizationLevel(int optimizationLevel) {
+        this.optimizationLevel = optimizationLevel;
+    }
+
+    /**
+     * @return true if a source map should be generated with the minified code
+     */
+    public boolean isSourceMap() {
+        return sourceMap;
+    }
+
+    public void setSourceMap(boolean sourceMap) {
+        this.sourceMap = sourceMap;
+    }
+
+    /**
+     * @return the UglifyJS minify options as a JSON object, without the mangle option, or null for the defaults
+     * (JavaScript only)
+     */
+    public String getJsOptions() {
+        return jsOptions;
+    }
+
+    public void setJsOptions(String jsOptions) {
+        this.jsOptions = jsOptions;
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Service provider of a minifier backend, discovered with {@link java.util.ServiceLoader}.
+ * A backend is selected by its name with the "jsEngine" or "cssEngine" parameter, so other engines can be added
+ * to the plugin dependencies without changing the plugin.
+ * A provider instance is used for a whole plugin execution and may be called by several worker threads.
+ */
+public interface MinifierProvider {
+    /**
+     * File type of JavaScript sources.
+     */
+    String JAVASCRIPT = "js";
+    /**
+     * File type of CSS sources.
+     */
+    String CSS = "css";
+
+    /**
+     * @return the name of the backend, as set in the plugin configuration
+     */
+    String getName();
+
+    /**
+     * @return the file type minified by the backend, {@link #JAVASCRIPT} or {@link #CSS}
+     */
+    String getType();
+
+    /**
+     * Describes the minifier, its version and the options affecting its output.
+     * The description keys the minification cache and the build manifest, so it must change whenever the output may.
+     *
+     * @param options
+     * @return the identity of the minifier
+     */
+    String getIdentity(MinifierOptions options);
+
+    /**
+     * Creates a minifier for the calling thread.
+     *
+     * @param options
+     * @param log
+     * @return the {@link Minifier}
+     */
+    Minifier createMinifier(MinifierOptions options, Log log);
+}
@@ -0,0 +1,80 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The minified code of a source and the diagnostics reported by the minifier.
+ */
+public class MinifierResult {
+    private final String code;
+    private final List<String> warnings;
+    private final String sourceMap;
+    private RuntimeException failure;
+
+    public MinifierResult(String code) {
+        this(code, Collections.<String>emptyList());
+    }
+
+    public MinifierResult(String code, List<String> warnings) {
+        this(code, warnings, null);
+    }
+
+    public MinifierResult(String code, List<String> warnings, String sourceMap) {
+        this.code = code;
+        this.warnings = warnings;
+        this.sourceMap = sourceMap;
+    }
+
+    /**
+     * @param failure the error of the minifier
+     * @return the result of a source of a batch that could not be minified
+     */
+    public static MinifierResult failure(RuntimeException failure) {
+        MinifierResult result = new MinifierResult(null);
+        result.failure = failure;
+        return result;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * @return the warnings of the minifier, logged by the plugin
+     */
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * @return the source map of the minified code as JSON, without the comment linking it, or null if there is none
+     */
+    public String getSourceMap() {
+        return sourceMap;
+    }
+
+    /**
+     * @return the error of a source of a batch that could not be minified, or null if it was minified
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+}
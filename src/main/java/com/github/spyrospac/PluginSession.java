@@ -0,0 +1,68 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * State shared by the executions of the plugin as long as its class realm lives, that is for a Maven session,
+ * or for the life of a Maven daemon: the minifier backends, with their pools of compiled engines, and the in memory
+ * cache of minified outputs. The modules of a reactor build, built in parallel or not, thus compile the engines
+ * once and minify the sources they share once.
+ * The state is thread safe and bounded: the pools keep a limited number of idle engines and the cache evicts
+ * the least recently used outputs.
+ */
+final class PluginSession {
+    private static final MemoryCache OUTPUTS = new MemoryCache();
+
+    private static Map<String, MinifierProvider> providers;
+
+    private PluginSession() {
+    }
+
+    /**
+     * Finds the {@link MinifierProvider} services once for the session.
+     *
+     * @return the minifier backends by type and name, e.g. "js:rhino-uglifyjs"
+     */
+    static synchronized Map<String, MinifierProvider> getProviders() {
+        if (providers == null) {
+            Map<String, MinifierProvider> found = new LinkedHashMap<>();
+            for (MinifierProvider provider
+                    : ServiceLoader.load(MinifierProvider.class, PluginSession.class.getClassLoader())) {
+                found.put(provider.getType() + ":" + provider.getName(), provider);
+            }
+            providers = Collections.unmodifiableMap(found);
+        }
+        return providers;
+    }
+
+    /**
+     * Returns the in memory cache of minified outputs, with the maximum size of the calling execution.
+     *
+     * @param maxSize the maximum size in bytes
+     * @return the cache shared by the session
+     */
+    static MemoryCache getOutputs(final long maxSize) {
+        OUTPUTS.setMaxSize(maxSize);
+        return OUTPUTS;
+    }
+}
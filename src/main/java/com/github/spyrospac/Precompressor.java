@@ -0,0 +1,241 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes compressed siblings of a minified output, ".gz" and ".br", to be served as they are by the web server
+ * (e.g. nginx gzip_static). A sibling that does not save enough bytes is not written, and a stale one is deleted.
+ * Siblings are written through {@link TextFiles}, so that a truncated sibling is never served.
+ * Brotli needs the brotli4j library in the plugin dependencies; it is loaded by reflection so that the plugin
+ * does not depend on its native code otherwise.
+ */
+final class Precompressor {
+
+    /**
+     * Compressed formats, by their name in the "precompress" parameter.
+     */
+    enum Format {
+        GZIP("gzip", ".gz"),
+        BROTLI("brotli", ".br");
+
+        private final String name;
+        private final String extension;
+
+        Format(String name, String extension) {
+            this.name = name;
+            this.extension = extension;
+        }
+    }
+
+    private static final String BROTLI_LOADER = "com.aayushatharva.brotli4j.Brotli4jLoader";
+    private static final String BROTLI_ENCODER = "com.aayushatharva.brotli4j.encoder.Encoder";
+
+    private final Set<Format> formats;
+    private final int gzipLevel;
+    private final int brotliQuality;
+    private final int minGain;
+    private final boolean sync;
+
+    private Method brotliCompress;
+    private Object brotliParameters;
+
+    /**
+     * @param formats       the formats to write
+     * @param gzipLevel     the gzip compression level, 0 to 9
+     * @param brotliQuality the Brotli quality, 0 to 11
+     * @param minGain       the minimum percentage of the minified size a sibling must save to be written
+     * @param sync          true to force the siblings to the disk before they replace the previous ones
+     * @throws MojoExecutionException if Brotli is requested but brotli4j is not available
+     */
+    Precompressor(Set<Format> formats, int gzipLevel, int brotliQuality, int minGain, boolean sync)
+            throws MojoExecutionException {
+        this.formats = formats;
+        this.gzipLevel = gzipLevel;
+        this.brotliQuality = brotliQuality;
+        this.minGain = minGain;
+        this.sync = sync;
+        if (formats.contains(Format.BROTLI)) {
+            loadBrotli();
+        }
+    }
+
+    /**
+     * Parses the comma separated formats of the "precompress" parameter.
+     *
+     * @param value e.g. "gzip", "brotli" or "gzip,brotli"
+     * @return the formats, empty if the value is null or empty
+     * @throws MojoExecutionException if a format is unknown
+     */
+    static Set<Format> parseFormats(String value) throws MojoExecutionException {
+        Set<Format> formats = EnumSet.noneOf(Format.class);
+        if (value == null) {
+            return formats;
+        }
+
+        for (String name : value.split(",")) {
+            name = name.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            boolean found = false;
+            for (Format format : Format.values()) {
+                if (format.name.equalsIgnoreCase(name)) {
+                    formats.add(format);
+                    found = true;
+                }
+            }
+            if (!found) {
+                throw new MojoExecutionException("Unknown precompress format \"" + name + "\", use gzip or brotli.");
+            }
+        }
+        return formats;
+    }
+
+    /**
+     * @return the formats and their settings, part of the options of the minified files
+     */
+    String getIdentity() {
+        StringBuilder identity = new StringBuilder("precompress=");
+        for (Format format : formats) {
+            identity.append(format.name).append(':')
+                    .append(format == Format.GZIP ? gzipLevel : brotliQuality).append(',');
+        }
+        return identity.append(minGain).append('%').toString();
+    }
+
+    /**
+     * Compresses a written minified file in every format and writes its siblings, for the outputs that are copied
+     * rather than minified.
+     *
+     * @param outputFile the minified file
+     * @return the number of siblings written
+     * @throws IOException
+     */
+    int compress(File outputFile) throws IOException {
+        return compress(Files.readAllBytes(outputFile.toPath()), outputFile);
+    }
+
+    /**
+     * Compresses a minified output in every format and writes the siblings of its file. The siblings in the formats
+     * that are no longer written are deleted.
+     *
+     * @param output     the minified output
+     * @param outputFile the minified file
+     * @return the number of siblings written
+     * @throws IOException
+     */
+    int compress(byte[] output, File outputFile) throws IOException {
+        int written = 0;
+        for (Format format : formats) {
+            File sibling = new File(outputFile.getPath() + format.extension);
+            byte[] compressed = format == Format.GZIP ? gzip(output) : brotli(output);
+            if ((long) compressed.length * 100 <= (long) output.length * (100 - minGain)) {
+                TextFiles.write(sibling, sync, ByteBuffer.wrap(compressed));
+                written++;
+            } else if (sibling.isFile() && !sibling.delete()) {
+                throw new IOException("Could not delete the stale " + sibling.getPath());
+            }
+        }
+        for (Format format : EnumSet.complementOf(EnumSet.copyOf(formats))) {
+            File sibling = new File(outputFile.getPath() + format.extension);
+            if (sibling.isFile() && !sibling.delete()) {
+                throw new IOException("Could not delete the stale " + sibling.getPath());
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Deletes the compressed siblings of a minified file that is deleted, in every format.
+     *
+     * @param outputFile the minified file
+     */
+    static void deleteSiblings(File outputFile) {
+        for (File sibling : getSiblings(outputFile)) {
+            sibling.delete();
+        }
+    }
+
+    /**
+     * @param outputFile the minified file
+     * @return the compressed siblings the file may have, in every format
+     */
+    static List<File> getSiblings(File outputFile) {
+        List<File> siblings = new ArrayList<>();
+        for (Format format : Format.values()) {
+            siblings.add(new File(outputFile.getPath() + format.extension));
+        }
+        return siblings;
+    }
+
+    private byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length / 2 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes) {
+            {
+                def.setLevel(gzipLevel);
+            }
+        }) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private byte[] brotli(byte[] data) throws IOException {
+        try {
+            return (byte[]) brotliCompress.invoke(null, data, brotliParameters);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void loadBrotli() throws MojoExecutionException {
+        try {
+            ClassLoader cl = getClass().getClassLoader();
+            Class.forName(BROTLI_LOADER, true, cl).getMethod("ensureAvailability").invoke(null);
+            Class<?> parameters = Class.forName(BROTLI_ENCODER + "$Parameters", true, cl);
+            brotliParameters = parameters.getDeclaredConstructor().newInstance();
+            parameters.getMethod("setQuality", int.class).invoke(brotliParameters, brotliQuality);
+            brotliCompress = Class.forName(BROTLI_ENCODER, true, cl).getMethod("compress", byte[].class, parameters);
+        } catch (ClassNotFoundException e) {
+            throw new MojoExecutionException("Brotli precompression needs com.aayushatharva.brotli4j:brotli4j "
+                    + "and its native library for the platform in the plugin dependencies.", e);
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            throw new MojoExecutionException("Could not load Brotli: " + e, e);
+        }
+    }
+}
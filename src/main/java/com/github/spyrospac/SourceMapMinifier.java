@@ -0,0 +1,36 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+/**
+ * A {@link Minifier} that chains the source map of an upstream tool (e.g. a transpiler) into the map of its output,
+ * so that the output maps to the original sources. Input maps given to a minifier without this interface
+ * are ignored, and its maps point at the sources it was given.
+ */
+public interface SourceMapMinifier extends Minifier {
+
+    /**
+     * Minifies a source with its input source map.
+     *
+     * @param name           the path of the source, used as the source of the generated map
+     * @param code           the source code
+     * @param inputSourceMap the source map of the source as JSON, or null if there is none
+     * @return the minified code, its source map if {@link MinifierOptions#isSourceMap()} and its diagnostics
+     */
+    MinifierResult minify(String name, String code, String inputSourceMap);
+}
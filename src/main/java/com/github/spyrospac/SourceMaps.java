@@ -0,0 +1,193 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Helpers for the source maps of minified files: finding the input map of a source, linking a map from its
+ * minified file, and naming the sources relatively to the map.
+ */
+final class SourceMaps {
+    private static final Pattern SOURCE_MAPPING_URL =
+            Pattern.compile("[#@] sourceMappingURL=([^\\s*]+)\\s*(?:\\*/)?\\s*\\z");
+    private static final String DATA_URL = "data:application/json";
+    private static final String BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+
+    private SourceMaps() {
+    }
+
+    /**
+     * Finds the source map of a source produced by an upstream tool: the map named by the sourceMappingURL
+     * comment at the end of the source (a relative file or a data URL), or else a ".map" file next to the source.
+     * The sources of the input map are relative to the input map, so they are rebased on the directory
+     * of the output map with a sourceRoot, unless the input map has one already.
+     *
+     * @param source          the source file
+     * @param code            the source code
+     * @param outputDirectory the directory of the output map
+     * @return the input source map as JSON, or null if there is none
+     * @throws IOException
+     */
+    static String findInputSourceMap(File source, String code, File outputDirectory) throws IOException {
+        File map = null;
+        Matcher matcher = SOURCE_MAPPING_URL.matcher(code);
+        if (matcher.find()) {
+            String url = matcher.group(1);
+            if (url.startsWith(DATA_URL)) {
+                int comma = url.indexOf(',');
+                String data = url.substring(comma + 1);
+                String json = url.substring(0, comma).endsWith(";base64")
+                        ? new String(decodeBase64(data), StandardCharsets.UTF_8) : URLDecoder.decode(data, "UTF-8");
+                return rebase(json, source.getParentFile(), outputDirectory);
+            }
+            map = new File(source.getParentFile(), URLDecoder.decode(url, "UTF-8"));
+        }
+
+        if (map == null || !map.isFile()) {
+            map = new File(source.getPath() + ".map");
+        }
+        return map.isFile()
+                ? rebase(FileUtils.readFileToString(map, StandardCharsets.UTF_8), map.getParentFile(), outputDirectory)
+                : null;
+    }
+
+    /**
+     * Sets the sourceRoot of an input map without one to the path from the output directory to the input map.
+     *
+     * @param map
+     * @param mapDirectory
+     * @param outputDirectory
+     * @return the rebased map
+     */
+    private static String rebase(String map, File mapDirectory, File outputDirectory) {
+        String root = relativePath(outputDirectory, mapDirectory);
+        int start = map.indexOf('{');
+        if (root.isEmpty() || start < 0 || map.contains("\"sourceRoot\"")) {
+            return map;
+        }
+        return map.substring(0, start + 1) + "\"sourceRoot\":\""
+                + root.replace("\\", "\\\\").replace("\"", "\\\"") + "/\"," + map.substring(start + 1);
+    }
+
+    /**
+     * Returns the sourceMap options of UglifyJS.
+     *
+     * @param inputSourceMap the input source map as JSON, or null
+     * @return the options as JSON
+     */
+    static String uglifyOptions(String inputSourceMap) {
+        StringWriter options = new StringWriter();
+        try (JsonWriter json = new JsonWriter(options)) {
+            json.beginObject();
+            if (inputSourceMap != null) {
+                json.name("content").value(inputSourceMap);
+            }
+            json.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return options.toString();
+    }
+
+    /**
+     * @param code
+     * @return true if the code ends with a sourceMappingURL comment
+     */
+    static boolean isLinked(String code) {
+        return SOURCE_MAPPING_URL.matcher(code).find();
+    }
+
+    /**
+     * Removes the sourceMappingURL comment at the end of the code, to link the code to another map.
+     *
+     * @param code
+     * @return the code without its sourceMappingURL comment
+     */
+    static String unlink(String code) {
+        Matcher matcher = SOURCE_MAPPING_URL.matcher(code);
+        if (!matcher.find() || matcher.start() < 2) {
+            return code;
+        }
+        int end = matcher.start() - 2;
+        String opening = code.substring(end, matcher.start());
+        if (!"//".equals(opening) && !"/*".equals(opening)) {
+            return code;
+        }
+        // the line break before the comment, as a new comment starts on a line of its own
+        while (end > 0 && (code.charAt(end - 1) == '\n' || code.charAt(end - 1) == '\r')) {
+            end--;
+        }
+        return code.substring(0, end);
+    }
+
+    /**
+     * Returns the comment linking a minified file to its source map, to be written after the minified code.
+     *
+     * @param mapName    the name of the map file, next to the minified file
+     * @param javaScript true for JavaScript, false for CSS
+     * @return the comment, on a line of its own
+     */
+    static String linkComment(String mapName, boolean javaScript) {
+        return javaScript ? "\n//# sourceMappingURL=" + mapName : "\n/*# sourceMappingURL=" + mapName + " */";
+    }
+
+    /**
+     * Returns the path of a file relative to a directory, with "/" separators, as sources are named in maps.
+     *
+     * @param directory
+     * @param file
+     * @return the relative path
+     */
+    static String relativePath(File directory, File file) {
+        return directory.getAbsoluteFile().toPath().normalize()
+                .relativize(file.getAbsoluteFile().toPath().normalize()).toString().replace(File.separatorChar, '/');
+    }
+
+    private static byte[] decodeBase64(String data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length() * 3 / 4);
+        int buffer = 0;
+        int bits = 0;
+        for (int i = 0; i < data.length(); i++) {
+            char c = data.charAt(i);
+            if (c == '=') {
+                break;
+            }
+            int value = BASE64.indexOf(c == '-' ? '+' : c == '_' ? '/' : c);
+            if (value < 0) {
+                throw new IOException("Invalid base64 in the source map data URL");
+            }
+            buffer = buffer << 6 | value;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                bytes.write(buffer >> bits & 0xFF);
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
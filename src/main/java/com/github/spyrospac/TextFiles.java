@@ -0,0 +1,415 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads sources and writes outputs as UTF-8 through NIO channels, so that a file has a single copy, its
+ * decoded text, on the heap. Large sources are memory mapped: their bytes stay off the heap while they are
+ * hashed and decoded. Outputs are encoded in small chunks straight into the file channel instead of into a
+ * byte array. Every output is written to a temporary file renamed over it, so that an interrupted build never
+ * leaves an empty or truncated output behind, and an output whose bytes did not change is not replaced at all,
+ * so that its modification time stays the same for the incremental steps that follow the minification.
+ */
+final class TextFiles {
+    /**
+     * Size from which sources are memory mapped.
+     */
+    static final int LARGE_FILE = 1024 * 1024;
+
+    private static final int CHUNK = 64 * 1024;
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private TextFiles() {
+    }
+
+    /**
+     * The text of a source file with the hash of its bytes.
+     */
+    static final class Source {
+        private final String code;
+        private final String hash;
+        private final long length;
+
+        private Source(final String code, final String hash, final long length) {
+            this.code = code;
+            this.hash = hash;
+            this.length = length;
+        }
+
+        String getCode() {
+            return code;
+        }
+
+        /**
+         * @return the SHA-256 of the bytes of the file, as {@link ContentHash} computes it
+         */
+        String getHash() {
+            return hash;
+        }
+
+        /**
+         * @return the length of the file in bytes
+         */
+        long getLength() {
+            return length;
+        }
+    }
+
+    /**
+     * Reads a UTF-8 source and hashes its bytes on the way.
+     *
+     * @param file
+     * @return the source text and hash
+     * @throws IOException
+     */
+    static Source read(final File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer bytes = load(channel, file);
+            int length = bytes.remaining();
+            String hash = ContentHash.sha256(bytes.duplicate());
+            return new Source(decode(bytes), hash, length);
+        }
+    }
+
+    /**
+     * Hashes the bytes of a file without decoding it.
+     *
+     * @param file
+     * @return the SHA-256 of the file, as {@link ContentHash} computes it
+     * @throws IOException
+     */
+    static String hash(final File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return ContentHash.sha256(load(channel, file));
+        }
+    }
+
+    /**
+     * Maps a large file, or reads a small one into a buffer of its size.
+     *
+     * @param channel
+     * @param file
+     * @return the bytes of the file
+     * @throws IOException
+     */
+    private static ByteBuffer load(final FileChannel channel, final File file) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(file.getPath() + " is too large to be minified.");
+        }
+        if (size >= LARGE_FILE) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        ByteBuffer bytes = ByteBuffer.allocate((int) size);
+        while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+            // reads until the buffer is full or the file ends
+        }
+        ((Buffer) bytes).flip();
+        return bytes;
+    }
+
+    /**
+     * Decodes UTF-8 bytes in chunks into a builder sized for the text, malformed input being replaced
+     * as {@link String#String(byte[], java.nio.charset.Charset)} does.
+     *
+     * @param bytes
+     * @return the text
+     */
+    private static String decode(final ByteBuffer bytes) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        StringBuilder text = new StringBuilder(bytes.remaining());
+        CharBuffer chunk = CharBuffer.allocate(Math.min(CHUNK, Math.max(bytes.remaining(), 16)));
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, chunk, true);
+            drain(chunk, text);
+        } while (result.isOverflow());
+        while (decoder.flush(chunk).isOverflow()) {
+            drain(chunk, text);
+        }
+        drain(chunk, text);
+        return text.toString();
+    }
+
+    /**
+     * Appends the decoded text of a chunk and clears it for the next one.
+     * The {@link Buffer} methods are called on the supertype, as Java 9 overrides them with other return types.
+     *
+     * @param chunk
+     * @param text
+     */
+    private static void drain(final CharBuffer chunk, final StringBuilder text) {
+        text.append(chunk.array(), chunk.arrayOffset(), chunk.position());
+        ((Buffer) chunk).clear();
+    }
+
+    /**
+     * Writes text as UTF-8, one part after the other, to a temporary file next to the output, then moved over it.
+     * The text is first encoded against the existing output, and the output is left as it is, with no temporary
+     * file written, if the bytes are the same.
+     *
+     * @param file
+     * @param sync  true to force the bytes to the disk before the move, so that the output survives a crash
+     * @param parts the text to write, e.g. the minified code and its source map comment
+     * @return the number of bytes of the output
+     * @throws IOException
+     */
+    static long write(final File file, final boolean sync, final String... parts) throws IOException {
+        if (file.isFile()) {
+            try (FileChannel existing = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                Comparison comparison = new Comparison(existing);
+                long length = encode(null, comparison, parts);
+                if (length >= 0 && comparison.isSame(length)) {
+                    return length;
+                }
+            }
+        }
+
+        File temp = createTemp(file);
+        try {
+            long written;
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+                written = encode(channel, null, parts);
+                if (sync) {
+                    channel.force(true);
+                }
+            }
+            move(temp, file);
+            return written;
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Checks if a file is one of the temporary files outputs are written to before they are moved over the output,
+     * named after the output with a leading dot, e.g. ".app.min.js123.tmp".
+     *
+     * @param name the name of the file
+     * @return true for a temporary file
+     */
+    static boolean isTemporary(final String name) {
+        return name.startsWith(".") && name.endsWith(TEMP_SUFFIX);
+    }
+
+    private static File createTemp(final File file) throws IOException {
+        return File.createTempFile("." + file.getName(), TEMP_SUFFIX, file.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Encodes text as UTF-8, as {@link #write(File, boolean, String...)} writes it.
+     *
+     * @param parts
+     * @return the bytes of the text
+     */
+    static byte[] toBytes(final String... parts) {
+        if (parts.length == 1) {
+            return parts[0].getBytes(StandardCharsets.UTF_8);
+        }
+        StringBuilder text = new StringBuilder();
+        for (String part : parts) {
+            text.append(part);
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes bytes to a temporary file next to the output, then moved over it, unless the output has the same
+     * bytes already.
+     *
+     * @param file
+     * @param sync  true to force the bytes to the disk before the move
+     * @param bytes
+     * @throws IOException
+     */
+    static void write(final File file, final boolean sync, final ByteBuffer bytes) throws IOException {
+        if (file.isFile() && file.length() == bytes.remaining()) {
+            try (FileChannel existing = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                if (load(existing, file).equals(bytes)) {
+                    return;
+                }
+            }
+        }
+
+        File temp = createTemp(file);
+        try {
+            try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE)) {
+                ByteBuffer remaining = bytes.duplicate();
+                while (remaining.hasRemaining()) {
+                    channel.write(remaining);
+                }
+                if (sync) {
+                    channel.force(true);
+                }
+            }
+            move(temp, file);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+    }
+
+    /**
+     * Copies a file as {@link #write(File, boolean, ByteBuffer)} writes its bytes.
+     *
+     * @param source
+     * @param file
+     * @param sync   true to force the bytes to the disk before the move
+     * @throws IOException
+     */
+    static void copy(final File source, final File file, final boolean sync) throws IOException {
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            write(file, sync, load(channel, source));
+        }
+    }
+
+    /**
+     * Moves a written temporary file over the output, atomically where the file system allows it.
+     *
+     * @param temp
+     * @param file
+     * @throws IOException
+     */
+    private static void move(final File temp, final File file) throws IOException {
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Encodes text as UTF-8 in chunks, either written to a channel or compared with an existing output.
+     *
+     * @param channel    the channel to write to, or null to compare only
+     * @param comparison the comparison with the existing output, or null to write only
+     * @param parts
+     * @return the number of bytes encoded, or -1 as soon as the comparison finds a difference
+     * @throws IOException
+     */
+    private static long encode(final FileChannel channel, final Comparison comparison, final String... parts)
+            throws IOException {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(CHUNK);
+        ByteBuffer bytes = ByteBuffer.allocate(CHUNK * 3);
+        long written = 0;
+        for (String part : parts) {
+            for (int start = 0; start < part.length(); ) {
+                int end = Math.min(part.length(), start + chars.remaining());
+                part.getChars(start, end, chars.array(), chars.position());
+                ((Buffer) chars).position(chars.position() + end - start);
+                start = end;
+
+                ((Buffer) chars).flip();
+                // a surrogate pair split by the chunk stays in the buffer for the next chunk
+                encoder.encode(chars, bytes, false);
+                written += drain(bytes, channel, comparison);
+                if (comparison != null && !comparison.isSame()) {
+                    return -1;
+                }
+                chars.compact();
+            }
+        }
+        ((Buffer) chars).flip();
+        encoder.encode(chars, bytes, true);
+        encoder.flush(bytes);
+        written += drain(bytes, channel, comparison);
+        return written;
+    }
+
+    private static int drain(final ByteBuffer bytes, final FileChannel channel, final Comparison comparison)
+            throws IOException {
+        ((Buffer) bytes).flip();
+        int count = bytes.remaining();
+        if (comparison != null) {
+            comparison.compare(bytes.duplicate());
+        }
+        while (channel != null && bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        ((Buffer) bytes).clear();
+        return count;
+    }
+
+    /**
+     * Compares the bytes encoded for an output, chunk after chunk, with the bytes of the existing output.
+     */
+    private static final class Comparison {
+        private final FileChannel existing;
+        private ByteBuffer chunk = ByteBuffer.allocate(0);
+        private boolean same = true;
+
+        private Comparison(final FileChannel existing) {
+            this.existing = existing;
+        }
+
+        void compare(final ByteBuffer bytes) throws IOException {
+            if (!same) {
+                return;
+            }
+            if (chunk.capacity() < bytes.remaining()) {
+                chunk = ByteBuffer.allocate(bytes.remaining());
+            }
+            ((Buffer) chunk).clear();
+            ((Buffer) chunk).limit(bytes.remaining());
+            while (chunk.hasRemaining() && existing.read(chunk) >= 0) {
+                // reads as many bytes as were written, or until the file ends
+            }
+            ((Buffer) chunk).flip();
+            same = chunk.equals(bytes);
+        }
+
+        /**
+         * @return true if all the bytes compared so far were the same
+         */
+        boolean isSame() {
+            return same;
+        }
+
+        /**
+         * @param written the number of bytes written
+         * @return true if all the bytes were the same, and the existing output has no more
+         * @throws IOException
+         */
+        boolean isSame(final long written) throws IOException {
+            return same && existing.size() == written;
+        }
+    }
+}
@@ -19,34 +19,76 @@ package com.github.spyrospac;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.logging.Log;
 
 import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.json.JsonParser;
 
 /**
  * Class used to invoke uglify javascript file.
+ * The instance is bound to the thread that created it and must be closed on the same thread.
  */
-class UglifyJavaScriptContext {
-    private final Context cx = Context.enter();
-    private final ScriptableObject global = cx.initStandardObjects();
-
-    UglifyJavaScriptContext(final Log log, final String... scripts) {
-        ClassLoader cl = getClass().getClassLoader();
-        for (String script : scripts) {
-
-            try (InputStreamReader in = new InputStreamReader(cl.getResourceAsStream("script/" + script), "UTF-8")) {
-                cx.evaluateReader(global, in, script, 1, null);
-            } catch (IOException e) {
-                log.error(e.getMessage(), e);
-            }
+class UglifyJavaScriptContext implements BatchMinifier, BundleMinifier, SourceMapMinifier {
+    /**
+     * Identity of the bundled minifier, used to key its cached outputs.
+     */
+    static final String MINIFIER = "UglifyJS 3.4.9";
+
+    private final Context cx = Watchdog.enterWatched();
+    private final JavaScriptEngine engine;
+    private final boolean mangle;
+    private final boolean sourceMap;
+    private final Object options;
+
+    UglifyJavaScriptContext(final JavaScriptEngine engine) {
+        this(engine, true, false);
+    }
+
+    UglifyJavaScriptContext(final JavaScriptEngine engine, final boolean mangle, final boolean sourceMap) {
+        this(engine, mangle, null, sourceMap);
+    }
 
+    /**
+     * @param engine
+     * @param mangle
+     * @param options   the UglifyJS minify options as a JSON object, parsed once into the object passed
+     *                  to every call, or null
+     * @param sourceMap
+     */
+    UglifyJavaScriptContext(final JavaScriptEngine engine, final boolean mangle, final String options,
+                            final boolean sourceMap) {
+        this.engine = engine;
+        this.mangle = mangle;
+        this.sourceMap = sourceMap;
+        try {
+            this.options = options == null ? null : new JsonParser(cx, engine.getScope()).parseValue(options);
+        } catch (JsonParser.ParseException e) {
+            close();
+            throw new IllegalArgumentException("Invalid UglifyJS options " + options + ": " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Compiles the UglifyJS library once, so that it can be shared by many contexts.
+     *
+     * @param log
+     * @param optimizationLevel the Rhino optimization level
+     * @param scripts
+     * @return the compiled {@link JavaScriptEngine}
+     */
+    static JavaScriptEngine compileEngine(final Log log, final int optimizationLevel, final String... scripts) {
+        return new JavaScriptEngine(log, Context.VERSION_DEFAULT, optimizationLevel,
+                Arrays.asList("uglifyJavascript", "uglifyJavascriptBatch"), scripts);
+    }
+
     /**
      * Invokes the uglifyJavascript() function with parameters the code and the mangle option.
      *
@@ -56,10 +98,98 @@ class UglifyJavaScriptContext {
      * @throws IOException
      */
     String invokeUglifyJSFunctionOnFile(final File file, final boolean mangle) throws IOException {
-        String data = FileUtils.readFileToString(file, "UTF-8");
-        ScriptableObject.putProperty(global, "data", data);
-        ScriptableObject.putProperty(global, "mangle", String.valueOf(mangle));
-        return cx.evaluateString(global,
-                "uglifyJavascript" + "(String(data), String(mangle));", "<cmd>", 1, null).toString();
+        return invokeUglifyJSFunction(TextFiles.read(file).getCode(), mangle);
+    }
+
+    /**
+     * Invokes the uglifyJavascript() function with parameters the code and the mangle option.
+     *
+     * @param data
+     * @param mangle
+     * @return minified code as a String
+     */
+    String invokeUglifyJSFunction(final String data, final boolean mangle) {
+        return engine.call(cx, "uglifyJavascript", data, mangle, null, options).toString();
+    }
+
+    /**
+     * Invokes the uglifyJavascript() function with parameters an object of the codes by file name
+     * and the mangle option, so that the files are minified together into a single output.
+     *
+     * @param sources the code of each file by its name, in order
+     * @param mangle
+     * @return minified code as a String
+     */
+    String invokeUglifyJSFunctionOnBundle(final Map<String, String> sources, final boolean mangle) {
+        return invokeUglifyJSFunctionOnBundle(sources, mangle, null).getCode();
+    }
+
+    /**
+     * Invokes the uglifyJavascript() function on files minified together, generating a source map if the
+     * UglifyJS sourceMap options are given.
+     *
+     * @param sources          the code of each file by its name, in order, the names being the sources of the map
+     * @param mangle
+     * @param sourceMapOptions the UglifyJS sourceMap options as JSON, or null for no source map
+     * @return the minified code and its source map
+     */
+    private MinifierResult invokeUglifyJSFunctionOnBundle(final Map<String, String> sources, final boolean mangle,
+                                                          final String sourceMapOptions) {
+        Scriptable files = cx.newObject(engine.getScope());
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            ScriptableObject.putProperty(files, source.getKey(), source.getValue());
+        }
+        Object result = engine.call(cx, "uglifyJavascript", files, mangle, sourceMapOptions, options);
+        if (result instanceof Scriptable) {
+            Scriptable minified = (Scriptable) result;
+            return new MinifierResult(Context.toString(ScriptableObject.getProperty(minified, "code")),
+                    Collections.<String>emptyList(), Context.toString(ScriptableObject.getProperty(minified, "map")));
+        }
+        return new MinifierResult(result.toString());
+    }
+
+    @Override
+    public MinifierResult minify(final String name, final String code) {
+        return minify(name, code, null);
+    }
+
+    @Override
+    public MinifierResult minify(final String name, final String code, final String inputSourceMap) {
+        if (!sourceMap) {
+            return new MinifierResult(invokeUglifyJSFunction(code, mangle));
+        }
+        return invokeUglifyJSFunctionOnBundle(Collections.singletonMap(name, code), mangle,
+                SourceMaps.uglifyOptions(inputSourceMap));
+    }
+
+    @Override
+    public MinifierResult minifyBundle(final Map<String, String> sources) {
+        if (!sourceMap) {
+            return new MinifierResult(invokeUglifyJSFunctionOnBundle(sources, mangle));
+        }
+        return invokeUglifyJSFunctionOnBundle(sources, mangle, SourceMaps.uglifyOptions(null));
+    }
+
+    /**
+     * Invokes the uglifyJavascriptBatch() function, which minifies each code separately. With source maps,
+     * the sources are minified one by one.
+     */
+    @Override
+    public List<MinifierResult> minifyBatch(final Map<String, String> sources) {
+        if (sourceMap) {
+            List<MinifierResult> results = new ArrayList<>(sources.size());
+            for (Map.Entry<String, String> source : sources.entrySet()) {
+                results.add(minify(source.getKey(), source.getValue()));
+            }
+            return results;
+        }
+        Scriptable codes = cx.newArray(engine.getScope(), sources.values().toArray());
+        return JavaScriptEngine.toResults(engine.call(cx, "uglifyJavascriptBatch", codes, mangle, options));
+    }
+
+    @Override
+    public void close() {
+        Context.exit();
+        engine.release();
     }
 }
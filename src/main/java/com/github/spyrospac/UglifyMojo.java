@@ -25,12 +25,29 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.shared.model.fileset.FileSet;
 import org.apache.maven.shared.model.fileset.util.FileSetManager;
-import org.mozilla.javascript.Context;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Goal which uglifies JavaScript files with UglifyJS (version 3.4.9).
@@ -41,19 +58,30 @@ import java.io.OutputStreamWriter;
 @Mojo(name = "uglify", defaultPhase = LifecyclePhase.COMPILE)
 public class UglifyMojo extends AbstractMojo {
 
-    private static boolean minifyJSEnabled;
-    private static boolean minifyCSSEnabled;
+    private boolean minifyJSEnabled;
+    private boolean minifyCSSEnabled;
 
-    UglifyMojo() {
-        setMinifyCSSEnabled(false);
-        setMinifyJSEnabled(false);
-    }
+    private MinifierProvider jsProvider;
+    private MinifierProvider cssProvider;
+    private MinifierOptions minifierOptions;
+    private Precompressor precompressor;
+    // the sources and bundles of the run that could not be minified
+    private final List<MinificationError> errors = new ArrayList<>();
+    // the minified files and bundles written by the run, with their logical and their hashed names
+    private final Set<File> written = Collections.synchronizedSet(new HashSet<File>());
 
     /**
      * {@link org.apache.maven.shared.model.fileset.FileSet} containing JavaScript source files.
      */
     @Parameter
     private FileSet sources;
+    /**
+     * Bundles of sources minified together into a single output file each, in the order of their includes.
+     * The JavaScript sources of a bundle are given to UglifyJS in a single call, so names are mangled across files;
+     * the CSS sources are concatenated and minified once.
+     */
+    @Parameter
+    private List<Bundle> bundles;
     /**
      * {@link java.io.File} indicating where the minified files should be created.
      * If no output directory is defined, the minified file will be created on the same folder.
@@ -66,6 +94,14 @@ public class UglifyMojo extends AbstractMojo {
      */
     @Parameter
     private boolean mangle = true;
+    /**
+     * UglifyJS compress and output options: a "preset" ("default", "fast" without mangling, or "max"),
+     * "compress", "passes", "toplevel", "reduceVars", "dropConsole", "pureFuncs", and any other UglifyJS
+     * option by name in "compressOptions" and "outputOptions". See {@link JsOptions}.
+     * Default value is the "default" preset.
+     */
+    @Parameter
+    private JsOptions jsOptions = new JsOptions();
     /**
      * Parameter to minify into a new file with the same name, if set to true.
      * If no output directory is defined, then the existing file will be replaced.
@@ -85,73 +121,1435 @@ public class UglifyMojo extends AbstractMojo {
      */
     @Parameter
     private String typesToMinify = "js,css";
+    /**
+     * Number of threads minifying files in parallel. Each thread uses its own JavaScript context.
+     * Default value is the number of available processors.
+     */
+    @Parameter
+    private int threads = Runtime.getRuntime().availableProcessors();
+    /**
+     * Rhino optimization level of the minifier libraries: -1 runs them in the interpreter,
+     * 0 to 9 compile them to Java bytecode with increasing optimizations.
+     * A library script too large to compile falls back to the interpreter. The libraries are shipped compiled
+     * at level 9; other levels compile them when the engines start.
+     * Default value is 9.
+     */
+    @Parameter
+    private int engineOptimizationLevel = 9;
+    /**
+     * {@link java.io.File} directory of the minification cache, kept across builds.
+     * Outputs are cached by the SHA-256 of their source, the minifier and its options, so unchanged files
+     * are copied from the cache instead of being minified again. If no directory is defined, no cache is used.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/uglify-cache")
+    private File cacheDirectory;
+    /**
+     * Maximum size of the minification cache in bytes, the least recently used outputs are evicted above it.
+     * Default value is 100MB.
+     */
+    @Parameter
+    private long cacheMaxSize = 100L * 1024 * 1024;
+    /**
+     * {@link java.io.File} keeping the state of the files minified by the previous run.
+     * Only added or changed sources are minified, and the outputs of deleted sources are removed.
+     * Changing the minifier options invalidates the affected files. If no file is defined, all files are minified.
+     * Executions with other sources directories, output directories or types to minify can share the file.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/uglify-manifest.properties")
+    private File manifestFile;
+    /**
+     * Name of the backend minifying JavaScript files. Backends are discovered as {@link MinifierProvider} services,
+     * so other engines can be added to the plugin dependencies.
+     * Default value is "rhino-uglifyjs", UglifyJS running in Rhino.
+     */
+    @Parameter
+    private String jsEngine = UglifyJsMinifierProvider.NAME;
+    /**
+     * Name of the backend minifying CSS files. Backends are discovered as {@link MinifierProvider} services,
+     * so other engines can be added to the plugin dependencies.
+     * Default value is "rhino-csso", CSSO running in Rhino.
+     */
+    @Parameter
+    private String cssEngine = CssoMinifierProvider.NAME;
+    /**
+     * Compressed copies written next to every minified file, "gzip" (.gz), "brotli" (.br) or "gzip,brotli",
+     * so that the web server can serve them as they are. The files are compressed in memory, in parallel with
+     * the minification of the next files. Brotli needs com.aayushatharva.brotli4j:brotli4j in the plugin
+     * dependencies. If no format is defined, nothing is compressed.
+     */
+    @Parameter
+    private String precompress;
+    /**
+     * Compression level of the gzip copies, from 0 (stored) and 1 (fastest) to 9 (smallest).
+     * Default value is 9.
+     */
+    @Parameter
+    private int gzipLevel = 9;
+    /**
+     * Quality of the Brotli copies, from 0 (fastest) to 11 (smallest).
+     * Default value is 11.
+     */
+    @Parameter
+    private int brotliQuality = 11;
+    /**
+     * Minimum gain, in percent of the minified size, for a compressed copy to be written.
+     * Smaller gains are not worth serving the compressed copy, so none is written and a stale one is deleted.
+     * Default value is 10.
+     */
+    @Parameter
+    private int precompressMinGain = 10;
+    /**
+     * Parameter to write a source map next to every minified file, named after it with a ".map" suffix,
+     * and to link it with a sourceMappingURL comment. The source map of an upstream tool is chained into it:
+     * the map named by the sourceMappingURL comment of the source, or else a ".map" file next to the source.
+     * Default value is false.
+     */
+    @Parameter
+    private boolean sourceMaps = false;
+    /**
+     * {@link java.io.File} directory where the metrics of the run are written, as uglify-report.json and
+     * uglify-report.csv: the time of each phase and the sizes and durations of every minified file.
+     * If no directory is defined, no report is written.
+     */
+    @Parameter(defaultValue = "${project.build.directory}")
+    private File reportDirectory;
+    /**
+     * Number of the slowest files listed in the log after the run, 0 to list none.
+     * Default value is 10.
+     */
+    @Parameter
+    private int slowestFiles = 10;
+    /**
+     * Sends the sources to the minification daemon (the daemon goal) running on this machine, which keeps its
+     * engines warm across builds. The sources are minified in process when no daemon is running.
+     * Default value is false.
+     */
+    @Parameter
+    private boolean useDaemon = false;
+    /**
+     * Loopback port of the minification daemon.
+     * Default value is 47321.
+     */
+    @Parameter
+    private int daemonPort = MinifierDaemon.DEFAULT_PORT;
+    /**
+     * Maximum size in bytes of the in memory cache of minified outputs, shared by the executions of the plugin in
+     * the Maven session, e.g. by the modules of a reactor build minifying the same libraries. 0 disables it.
+     * Default value is 67108864 (64MB).
+     */
+    @Parameter
+    private long sessionCacheMaxSize = 64L * 1024 * 1024;
+    /**
+     * Maximum time in milliseconds to minify a file or a bundle in Rhino, 0 for no limit. The engine checks the time
+     * as it runs, through Rhino's instruction observer, so that a pathological source cannot block the build.
+     * Default value is 0.
+     */
+    @Parameter
+    private long fileTimeout = 0;
+    /**
+     * What is done with a file that takes longer than the fileTimeout: "fail" fails the build, "copy" copies
+     * the source unminified to its output with a warning, and minifies it again on the next run.
+     * Default value is "fail".
+     */
+    @Parameter
+    private String fileTimeoutPolicy = "fail";
+    /**
+     * Time in milliseconds after which a file still being minified is logged, and again each time it elapses,
+     * 0 to log nothing.
+     * Default value is 30000.
+     */
+    @Parameter
+    private long slowFileWarning = 30000;
+    /**
+     * What is done when sources or bundles cannot be minified, e.g. for a syntax error: "fail" minifies the other
+     * files, then fails the build, "continue" minifies the other files and lets the build go on. Either way every
+     * error is listed at the end of the run with its file, line and column, and written to uglify-errors.json
+     * in the reportDirectory.
+     * Default value is "fail".
+     */
+    @Parameter
+    private String failOnError = "fail";
+    /**
+     * Whether the outputs are forced to the disk before they replace the previous outputs, so that they survive
+     * a crash of the machine. Outputs are always written to a temporary file moved over the previous output,
+     * and outputs whose bytes did not change are not rewritten, whatever this parameter.
+     * Default value is false.
+     */
+    @Parameter
+    private boolean syncOutputs = false;
+    /**
+     * Maximum size in bytes of the small sources minified together in a single call into the minifier, each into
+     * its own output, 0 to minify every source in a call of its own. For trees of many small modules, whose
+     * minification takes less time than a call. Sources are not batched with source maps or the daemon.
+     * Default value is 0.
+     */
+    @Parameter
+    private int batchSize = 0;
+    /**
+     * Maximum size in bytes of a source to be batched, larger sources are minified in a call of their own.
+     * Default value is 2048.
+     */
+    @Parameter
+    private int batchFileSize = 2048;
+    /**
+     * Parameter to copy the sources that are minified already, e.g. vendor bundles not named *.min.js, instead of
+     * minifying them again. A source is taken for minified if most of it is on long lines with little whitespace.
+     * With source maps, the map of the source is written next to the copy and linked from it.
+     * Default value is true.
+     */
+    @Parameter
+    private boolean detectMinified = true;
+    /**
+     * Parameter to name every minified file after the hash of its content, e.g. app.3f2c1b9e.min.js, so that it can
+     * be served with far-future cache headers. The hashed file of the previous content is deleted.
+     * The logical names are mapped to the hashed ones in the asset manifest. Source maps keep the logical name.
+     * Default value is false.
+     */
+    @Parameter
+    private boolean hashOutputNames = false;
+    /**
+     * {@link java.io.File} of the JSON asset manifest written when the outputs are hashed, mapping the logical name
+     * of every minified file to its hashed name, e.g. {"js/app.min.js":"js/app.3f2c1b9e.min.js"}, relative to the
+     * output directory (or to the sources directory if there is none), for server-side templates to read.
+     * A file outside of that directory, e.g. a bundle, is recorded with its absolute path.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/uglify-assets.json")
+    private File assetManifestFile;
+
+    private DaemonClient daemonClient;
+    private AssetManifest assets;
+    private MemoryCache sessionCache;
+    private final AtomicInteger sessionCacheHits = new AtomicInteger();
 
     public void execute() throws MojoExecutionException {
 
         try {
-            long start = System.currentTimeMillis();
-            int count = uglify(getSourceFiles());
-            long finish = System.currentTimeMillis();
-            long timeElapsed = finish - start;
+            long start = System.nanoTime();
+            int count = run(null, null, true);
+            long timeElapsed = (System.nanoTime() - start) / 1000000;
             getLog().info("Uglified " + count + " file(s) in " + timeElapsed + " milliseconds.");
         } catch (IOException e) {
-            throw new MojoExecutionException("Failure to precompile handlebars templates.", e);
+            throw new MojoExecutionException("Failure to uglify the files.", e);
         }
     }
 
-    private int uglify(File[] files) throws IOException {
+    /**
+     * Minifies every source and bundle, or only the sources that changed while watching them.
+     * The metrics of the run are logged and written only for a full run.
+     *
+     * @param changed the changed sources to minify, or null to minify every source
+     * @param deleted the deleted sources, whose outputs are deleted, or null for a full run
+     * @param bundled true to minify the bundles too
+     * @return the number of minified files
+     * @throws IOException
+     * @throws MojoExecutionException
+     */
+    int run(File[] changed, Collection<File> deleted, boolean bundled) throws IOException, MojoExecutionException {
+        long start = System.nanoTime();
+        BuildManifest manifest = manifestFile == null ? null : BuildManifest.load(manifestFile, BuildManifest.execution(
+                sources == null ? new File("") : getSourceDir(), outputDirectory, typesToMinify), getLog());
+        MinificationReport report = new MinificationReport();
+        report.setJsPreset(jsOptions.getPreset());
+        MinificationCache cache = cacheDirectory == null ? null
+                : new MinificationCache(cacheDirectory, cacheMaxSize, getLog());
+        minifierOptions = newMinifierOptions();
+        daemonClient = useDaemon ? new DaemonClient(daemonPort, fileTimeout, getLog()) : null;
+        sessionCache = sessionCacheMaxSize > 0 ? PluginSession.getOutputs(sessionCacheMaxSize) : null;
+        sessionCacheHits.set(0);
+        if (hashOutputNames && sources != null && isReplacingSources()) {
+            throw new MojoExecutionException("The outputs cannot be hashed when the sources are replaced by their "
+                    + "minified files, set an outputDirectory or set keepName to false.");
+        }
+        if (!"fail".equals(fileTimeoutPolicy) && !"copy".equals(fileTimeoutPolicy)) {
+            throw new MojoExecutionException("Unknown fileTimeoutPolicy \"" + fileTimeoutPolicy
+                    + "\", use \"fail\" or \"copy\".");
+        }
+        if (!"fail".equals(failOnError) && !"continue".equals(failOnError)) {
+            throw new MojoExecutionException("Unknown failOnError \"" + failOnError
+                    + "\", use \"fail\" or \"continue\".");
+        }
+        if (gzipLevel < 0 || gzipLevel > 9) {
+            throw new MojoExecutionException("Invalid gzipLevel " + gzipLevel + ", use 0 to 9.");
+        }
+        if (brotliQuality < 0 || brotliQuality > 11) {
+            throw new MojoExecutionException("Invalid brotliQuality " + brotliQuality + ", use 0 to 11.");
+        }
+        errors.clear();
+        written.clear();
+        assets = hashOutputNames ? AssetManifest.load(assetManifestFile, getAssetRoot(), getLog()) : null;
+        Set<Precompressor.Format> formats = Precompressor.parseFormats(precompress);
+        precompressor = formats.isEmpty() ? null
+                : new Precompressor(formats, gzipLevel, brotliQuality, precompressMinGain, syncOutputs);
         int count = 0;
+        try {
+            if (sources != null) {
+                count = uglify(changed == null ? getSourceFiles() : changed, deleted, manifest, cache, report);
+            }
+            if (bundles != null && bundled) {
+                count += minifyBundles(cache);
+            }
+        } finally {
+            if (manifest != null) {
+                manifest.save(manifestFile);
+            }
+            if (assets != null) {
+                assets.save(assetManifestFile);
+            }
+            if (cache != null && cache.getHits() + cache.getMisses() > 0) {
+                cache.evict();
+                getLog().info("Minification cache: " + cache.getHits() + " hit(s), "
+                        + cache.getMisses() + " miss(es).");
+            }
+            if (sessionCacheHits.get() > 0) {
+                getLog().info("Session cache: " + sessionCacheHits.get() + " hit(s), "
+                        + sessionCache.getSize() / 1024 + " KB in memory.");
+            }
+            if (changed == null) {
+                report.setElapsedNanos(System.nanoTime() - start);
+                report.setDaemon(daemonClient);
+                report.log(getLog(), slowestFiles);
+                if (reportDirectory != null) {
+                    report.writeJson(new File(reportDirectory, "uglify-report.json"));
+                    report.writeCsv(new File(reportDirectory, "uglify-report.csv"));
+                    report.writeErrors(new File(reportDirectory, "uglify-errors.json"), errors);
+                }
+            }
+            logErrors();
+        }
+        if (!errors.isEmpty() && "fail".equals(failOnError)) {
+            throw new MojoExecutionException(errors.size() + " file(s) could not be uglified, the first one: "
+                    + errors.get(0));
+        }
+        return count;
+    }
+
+    /**
+     * Lists the sources and bundles that could not be minified.
+     */
+    private void logErrors() {
+        if (errors.isEmpty()) {
+            return;
+        }
+        getLog().error(errors.size() + " file(s) could not be uglified:");
+        for (MinificationError error : errors) {
+            getLog().error("  " + error);
+        }
+    }
+
+    private MinifierOptions newMinifierOptions() throws MojoExecutionException {
+        if (!JsOptions.PRESETS.contains(jsOptions.getPreset())) {
+            throw new MojoExecutionException("Unknown jsOptions preset \"" + jsOptions.getPreset() + "\", use one of "
+                    + JsOptions.PRESETS + ".");
+        }
+        MinifierOptions options = new MinifierOptions();
+        options.setMangle(mangle && jsOptions.isMangle());
+        options.setJsOptions(jsOptions.toJson());
+        options.setOptimizationLevel(engineOptimizationLevel);
+        options.setSourceMap(sourceMaps);
+        return options;
+    }
+
+    /**
+     * Compiles the engines of the enabled minifiers ahead of the first file, keeping them idle in their pools.
+     *
+     * @throws MojoExecutionException if a minifier is not found
+     */
+    void warmUp() throws MojoExecutionException {
+        checkTypesToMinify();
+        MinifierOptions options = newMinifierOptions();
+        if (isMinifyJSEnabled()) {
+            getProvider(jsEngine, MinifierProvider.JAVASCRIPT).createMinifier(options, getLog()).close();
+        }
+        if (isMinifyCSSEnabled()) {
+            getProvider(cssEngine, MinifierProvider.CSS).createMinifier(options, getLog()).close();
+        }
+    }
 
+    /**
+     * Minifies the sources that changed since the previous run, recorded in the manifest.
+     *
+     * @param files    the sources to minify
+     * @param deleted  the deleted sources, whose outputs are deleted, or null if the files are every source,
+     *                 the outputs of the sources missing from the files being deleted
+     * @param manifest the manifest of the previous run, or null
+     * @param cache    the minification cache, or null
+     * @param report
+     * @return the number of minified files
+     * @throws IOException
+     * @throws MojoExecutionException
+     */
+    private int uglify(File[] files, Collection<File> deleted, BuildManifest manifest, MinificationCache cache,
+                       MinificationReport report) throws IOException, MojoExecutionException {
         checkTypesToMinify();
 
+        jsProvider = isMinifyJSEnabled() ? getProvider(jsEngine, MinifierProvider.JAVASCRIPT) : null;
+        cssProvider = isMinifyCSSEnabled() ? getProvider(cssEngine, MinifierProvider.CSS) : null;
+
+        List<MinificationTask> tasks = new ArrayList<>();
+        Set<String> paths = new HashSet<>();
+        int unchanged = 0;
+
         for (File file : files) {
             File outputFile = getOutputFile(file);
 
+            boolean javaScript = isMinifyJSEnabled() && isFileJavaScript(file);
+            if (!javaScript && !(isMinifyCSSEnabled() && isFileCSS(file))) {
+                continue;
+            }
+            String path = getSourceDir().toURI().relativize(file.toURI()).getPath();
+            paths.add(path);
+
             boolean skipFile = shouldFileBeSkipped(outputFile, file);
 
             if (!skipFile) {
-                final String filePath = file.getPath();
+                MinificationTask task = new MinificationTask(file, outputFile, path, javaScript,
+                        getOptions(javaScript ? jsProvider : cssProvider));
+                if (manifest != null && isUnchanged(task, manifest)) {
+                    getLog().debug("skipping unchanged file " + file.getName());
+                    unchanged++;
+                } else {
+                    tasks.add(task);
+                }
+            } else {
+                getLog().debug("skipping file " + file.getName());
+            }
+        }
 
-                if (isMinifyJSEnabled() && isFileJavaScript(file)) {
-                    getLog().debug("Uglifying " + filePath);
-                    String output =
-                            new UglifyJavaScriptContext(getLog(), "uglifyjs.js", "uglifyJavascript.js")
-                                    .invokeUglifyJSFunctionOnFile(file, mangle);
+        report.setUnchanged(unchanged);
+        if (manifest != null && deleted != null) {
+            deleteOutputsOf(manifest, deleted);
+        } else if (manifest != null) {
+            deleteOrphanedOutputs(manifest, paths);
+            if (unchanged > 0) {
+                getLog().info("Skipped " + unchanged + " unchanged file(s).");
+            }
+        }
 
-                    writeToFile(output, file, outputFile);
-                    count++;
-                } else if (isMinifyCSSEnabled() && isFileCSS(file)) {
-                    getLog().debug("Uglifying " + filePath);
-                    String output =
-                            new CleanCSSJavaScriptContext(getLog(), "clean-css-v4.2.1.js", "minifyCSS.js")
-                                    .invokeCleanCssFunctionOnFile(file);
+        if (tasks.isEmpty()) {
+            return 0;
+        }
+
+        int workerCount = Math.max(1, Math.min(threads, tasks.size()));
+        report.setThreads(workerCount);
+        report.addTasks(tasks);
+        ExecutorService compressor = precompressor == null ? null
+                : Executors.newFixedThreadPool(workerCount, new NamedThreadFactory("uglify-compress"));
+        List<Future<?>> compressions = Collections.synchronizedList(new ArrayList<Future<?>>());
+        AtomicInteger nextTask = new AtomicInteger();
+        ConcurrentMap<String, MinificationTask> originals = new ConcurrentHashMap<>();
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(new Worker(tasks, nextTask, originals, cache, compressor, compressions));
+        }
+
+        int count = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount, new NamedThreadFactory("uglify-worker"));
+        try {
+            for (Future<Integer> result : executor.invokeAll(workers)) {
+                count += result.get();
+            }
+            for (Future<?> compression : compressions) {
+                compression.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while uglifying files.");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+            if (compressor != null) {
+                compressor.shutdownNow();
+            }
+        }
+
+        if (manifest != null) {
+            updateManifest(manifest, tasks);
+        }
+
+        collectFailures(tasks);
+
+        return count;
+    }
+
+    /**
+     * Minifies every bundle into its output file, with a single minifier call per bundle.
+     * Bundles are cached by the paths and contents of their sources, in order.
+     *
+     * @param cache the minification cache, or null
+     * @return the number of minified bundles
+     * @throws IOException
+     * @throws MojoExecutionException if a bundle is not configured properly
+     */
+    private int minifyBundles(MinificationCache cache) throws IOException, MojoExecutionException {
+        Minifier jsMinifier = null;
+        Minifier cssMinifier = null;
+        int count = 0;
+        try {
+            for (Bundle bundle : bundles) {
+                String name = bundle.getName();
+                boolean javaScript = name != null && isFileJavaScript(new File(name));
+                if (bundle.getSources() == null || !javaScript && (name == null || !isFileCSS(new File(name)))) {
+                    throw new MojoExecutionException("A bundle needs sources and a name ending with .js or .css, "
+                            + "found \"" + name + "\".");
+                }
+
+                File directory = new File(bundle.getSources().getDirectory());
+                File outputFile = new File(outputDirectory == null ? directory : outputDirectory, name);
+                Map<String, String> sources = new LinkedHashMap<>();
+                StringBuilder hashes = new StringBuilder();
+                for (File file : getBundleSourceFiles(bundle.getSources(), javaScript)) {
+                    // the sources of a map are relative to the map
+                    String path = sourceMaps ? SourceMaps.relativePath(outputFile.getParentFile(), file)
+                            : directory.toURI().relativize(file.toURI()).getPath();
+                    TextFiles.Source source = TextFiles.read(file);
+                    sources.put(path, source.getCode());
+                    hashes.append(path).append('\n').append(source.getHash()).append('\n');
+                }
+                if (sources.isEmpty()) {
+                    getLog().warn("No sources in bundle " + name + ".");
+                    continue;
+                }
 
-                    writeToFile(output, file, outputFile);
+                FileUtils.forceMkdir(outputFile.getAbsoluteFile().getParentFile());
+                MinifierProvider provider = javaScript ? getProvider(jsEngine, MinifierProvider.JAVASCRIPT)
+                        : getProvider(cssEngine, MinifierProvider.CSS);
+                String hash = ContentHash.sha256(hashes.toString().getBytes(StandardCharsets.UTF_8));
+                String key = MinificationCache.key(hash, getOptions(provider) + " bundle");
+                if (copyFromCache(cache, key, outputFile)) {
+                    File publishedFile = publish(outputFile);
+                    if (precompressor != null) {
+                        precompressor.compress(publishedFile);
+                    }
+                    getLog().info("Copied bundle " + name + " from the minification cache.");
                     count++;
+                    continue;
+                }
+
+                Minifier minifier;
+                if (javaScript) {
+                    if (jsMinifier == null) {
+                        jsMinifier = provider.createMinifier(minifierOptions, getLog());
+                    }
+                    minifier = jsMinifier;
+                } else {
+                    if (cssMinifier == null) {
+                        cssMinifier = provider.createMinifier(minifierOptions, getLog());
+                    }
+                    minifier = cssMinifier;
+                }
+
+                MinifierResult result;
+                boolean timedOut = false;
+                Watchdog.watch("bundle " + name, fileTimeout, slowFileWarning, getLog());
+                try {
+                    result = minifier instanceof BundleMinifier
+                            ? ((BundleMinifier) minifier).minifyBundle(sources)
+                            : minifier.minify(name, concatenate(sources.values(), javaScript));
+                } catch (Watchdog.Timeout e) {
+                    // the engine of the minifier is dropped, a new minifier is created for the next bundle
+                    minifier.close();
+                    if (javaScript) {
+                        jsMinifier = null;
+                    } else {
+                        cssMinifier = null;
+                    }
+                    try {
+                        result = onTimeout(e, concatenate(sources.values(), javaScript));
+                    } catch (IOException failure) {
+                        // recorded like the timeout of a source file, the run fails once the others are minified
+                        errors.add(MinificationError.of(name, true, failure));
+                        continue;
+                    }
+                    timedOut = true;
+                } catch (RuntimeException e) {
+                    // as for the source files, the other bundles are minified before the error is reported
+                    getLog().debug("Could not uglify bundle " + name + ".", e);
+                    errors.add(MinificationError.of(name, true, e));
+                    continue;
+                } finally {
+                    Watchdog.unwatch();
+                }
+                for (String warning : result.getWarnings()) {
+                    getLog().warn(name + ": " + warning);
+                }
+                String[] output = getOutput(result, outputFile, javaScript);
+                writeOutput(result, outputFile, output);
+                if (!timedOut) {
+                    putInCache(cache, key, outputFile, result.getSourceMap() != null);
                 }
+                File publishedFile = publish(outputFile);
+                if (precompressor != null) {
+                    precompressor.compress(TextFiles.toBytes(output), publishedFile);
+                }
+                getLog().info("Bundled " + sources.size() + " file(s) into " + publishedFile.getPath() + ".");
+                count++;
+            }
+        } finally {
+            if (jsMinifier != null) {
+                jsMinifier.close();
+            }
+            if (cssMinifier != null) {
+                cssMinifier.close();
+            }
+        }
+        return count;
+    }
 
+    /**
+     * Returns the sources of a bundle of the given type, in the order of the includes of the {@link FileSet}
+     * and in alphabetical order within an include. A source matched by several includes is added once.
+     *
+     * @param fileSet
+     * @param javaScript true for JavaScript sources, false for CSS
+     * @return the source {@link File files}
+     */
+    private List<File> getBundleSourceFiles(FileSet fileSet, boolean javaScript) {
+        FileSetManager fileSetManager = new FileSetManager();
+        File directory = new File(fileSet.getDirectory());
+        List<String> includes = fileSet.getIncludes().isEmpty()
+                ? Collections.singletonList("**/*") : fileSet.getIncludes();
+        Set<File> files = new LinkedHashSet<>();
+        for (String include : includes) {
+            FileSet single = new FileSet();
+            single.setDirectory(fileSet.getDirectory());
+            single.addInclude(include);
+            single.setExcludes(fileSet.getExcludes());
+            String[] includedFiles = fileSetManager.getIncludedFiles(single);
+            Arrays.sort(includedFiles);
+            for (String includedFile : includedFiles) {
+                File file = new File(directory, includedFile);
+                if (javaScript ? isFileJavaScript(file) : isFileCSS(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        return new ArrayList<>(files);
+    }
+
+    /**
+     * Concatenates the sources of a bundle, for minifiers that take a single source.
+     * JavaScript sources are separated by a semicolon, in case one does not end its last statement.
+     *
+     * @param sources
+     * @param javaScript
+     * @return the concatenated code
+     */
+    private String concatenate(Collection<String> sources, boolean javaScript) {
+        StringBuilder code = new StringBuilder();
+        for (String source : sources) {
+            code.append(source).append(javaScript ? "\n;\n" : "\n");
+        }
+        return code.toString();
+    }
+
+    /**
+     * Returns the identity of a minifier and the options its outputs depend on.
+     * The compressed siblings do not change the minified output and are tracked by {@link #getPrecompression()}.
+     *
+     * @param provider
+     * @return the options of the minified files
+     */
+    private String getOptions(MinifierProvider provider) {
+        String options = provider.getIdentity(minifierOptions);
+        return sourceMaps ? options + " sourceMaps" : options;
+    }
+
+    /**
+     * @return the settings the compressed siblings are written with, empty if none are written
+     */
+    private String getPrecompression() {
+        return precompressor == null ? "" : precompressor.getIdentity();
+    }
+
+    /**
+     * Finds the minifier backend with the given name among the {@link MinifierProvider} services.
+     *
+     * @param name
+     * @param type the file type the backend must minify
+     * @return the {@link MinifierProvider}
+     * @throws MojoExecutionException if there is no such backend
+     */
+    private MinifierProvider getProvider(String name, String type) throws MojoExecutionException {
+        Map<String, MinifierProvider> providers = PluginSession.getProviders();
+        MinifierProvider provider = providers.get(type + ":" + name);
+        if (provider == null) {
+            throw new MojoExecutionException("No " + type + " minifier named \"" + name + "\", available minifiers: "
+                    + providers.keySet() + ".");
+        }
+        return daemonClient == null ? provider : daemonClient.wrap(provider);
+    }
+
+    /**
+     * Checks if the source was minified by the previous run with the same options and has not changed since.
+     * The content is hashed only if the size or the modification time of the source changed.
+     * If the source is replaced by its minified file, it is never considered unchanged.
+     *
+     * @param task
+     * @param manifest
+     * @return true if the previous output is still valid
+     * @throws IOException
+     */
+    private boolean isUnchanged(MinificationTask task, BuildManifest manifest) throws IOException {
+        File inputFile = task.getInputFile();
+        File outputFile = task.getOutputFile();
+        File publishedFile = assets == null ? outputFile : assets.get(outputFile);
+        BuildManifest.Entry entry = manifest.get(task.getPath());
+
+        if (entry == null || publishedFile == null
+                || outputFile.getAbsolutePath().equals(inputFile.getAbsolutePath())
+                || !entry.hasOptions(task.getOptions())
+                || !entry.getOutputPath().equals(publishedFile.getAbsolutePath()) || !publishedFile.isFile()
+                || sourceMaps && !getSourceMapFile(outputFile).isFile()) {
+            return false;
+        }
+        task.setPublishedFile(publishedFile);
+
+        if (entry.getLength() == inputFile.length() && entry.getLastModified() == inputFile.lastModified()) {
+            recompress(task, entry, manifest);
+            return true;
+        }
+
+        task.setHash(TextFiles.hash(inputFile));
+        if (task.getHash().equals(entry.getHash())) {
+            // same content with a new timestamp, e.g. a fresh checkout
+            manifest.put(task.getPath(), BuildManifest.Entry.of(task, entry.getPrecompression()));
+            recompress(task, manifest.get(task.getPath()), manifest);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Writes the compressed siblings of an unchanged output again if the precompression settings changed since they
+     * were written, or deletes them if precompression was turned off. The output itself is kept.
+     *
+     * @param task
+     * @param entry    the entry of the unchanged source
+     * @param manifest
+     * @throws IOException
+     */
+    private void recompress(MinificationTask task, BuildManifest.Entry entry, BuildManifest manifest)
+            throws IOException {
+        String precompression = getPrecompression();
+        if (entry.getPrecompression().equals(precompression)) {
+            return;
+        }
+        if (precompressor == null) {
+            Precompressor.deleteSiblings(task.getPublishedFile());
+        } else {
+            precompressor.compress(task.getPublishedFile());
+        }
+        manifest.put(task.getPath(), entry.withPrecompression(precompression));
+    }
+
+    /**
+     * Deletes the outputs of the sources minified by the previous run that are no longer part of the build,
+     * e.g. deleted or renamed sources.
+     *
+     * @param manifest
+     * @param paths the paths of the current sources
+     */
+    private void deleteOrphanedOutputs(BuildManifest manifest, Set<String> paths) {
+        int deleted = 0;
+        for (BuildManifest.Entry entry : manifest.retainAll(paths)) {
+            File orphan = new File(entry.getOutputPath());
+            if (deleteOrphan(orphan)) {
+                getLog().debug("Deleted orphaned output " + orphan.getPath());
+                deleted++;
+            }
+        }
+
+        if (deleted > 0) {
+            getLog().info("Deleted " + deleted + " orphaned output(s).");
+        }
+    }
+
+    /**
+     * Deletes the outputs of deleted sources, as recorded in the manifest.
+     *
+     * @param manifest
+     * @param deleted
+     */
+    private void deleteOutputsOf(BuildManifest manifest, Collection<File> deleted) {
+        for (File file : deleted) {
+            String path = getSourceDir().toURI().relativize(file.toURI()).getPath();
+            BuildManifest.Entry entry = manifest.get(path);
+            if (entry != null) {
+                manifest.remove(path);
+                if (deleteOrphan(new File(entry.getOutputPath()))) {
+                    getLog().info("Deleted " + entry.getOutputPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the minified file of a source that is no longer part of the build, removing it from the asset
+     * manifest if outputs are hashed.
+     *
+     * @param outputFile the minified file, hashed if outputs are hashed
+     * @return true if the minified file was deleted
+     */
+    private boolean deleteOrphan(File outputFile) {
+        if (assets != null) {
+            // the source map keeps the logical name
+            getSourceMapFile(assets.remove(outputFile)).delete();
+        }
+        return deleteOutput(outputFile);
+    }
+
+    /**
+     * Deletes a minified file with its source map and its compressed copies.
+     *
+     * @param outputFile
+     * @return true if the minified file was deleted
+     */
+    private boolean deleteOutput(File outputFile) {
+        getSourceMapFile(outputFile).delete();
+        Precompressor.deleteSiblings(outputFile);
+        return outputFile.isFile() && outputFile.delete();
+    }
+
+    /**
+     * Records the minified files in the manifest. Failed files are removed, so that the next run retries them.
+     * A file replaced by its minified copy is not recorded.
+     * If a source now has a different output file, the previous output is deleted.
+     *
+     * @param manifest
+     * @param tasks
+     */
+    private void updateManifest(BuildManifest manifest, List<MinificationTask> tasks) {
+        for (MinificationTask task : tasks) {
+            BuildManifest.Entry previous = manifest.get(task.getPath());
+            String outputPath = task.getPublishedFile().getAbsolutePath();
+            if (previous != null && !previous.getOutputPath().equals(outputPath)
+                    && !previous.getOutputPath().equals(task.getInputFile().getAbsolutePath())) {
+                deleteOutput(new File(previous.getOutputPath()));
+            }
+
+            if (task.getFailure() != null || task.getHash() == null || task.isTimedOut()
+                    || outputPath.equals(task.getInputFile().getAbsolutePath())) {
+                manifest.remove(task.getPath());
             } else {
-                getLog().debug("skipping file " + file.getName());
+                manifest.put(task.getPath(), BuildManifest.Entry.of(task, getPrecompression()));
+            }
+        }
+    }
+
+    /**
+     * Collects the errors of the failed files, in the order of the source files. The stack traces of the failures
+     * other than the errors of the minifiers are logged.
+     *
+     * @param tasks
+     */
+    private void collectFailures(List<MinificationTask> tasks) {
+        for (MinificationTask task : tasks) {
+            Exception failure = task.getFailure();
+            if (failure != null) {
+                if (failure instanceof MinificationException) {
+                    getLog().debug("Could not uglify " + task.getInputFile().getPath() + ".", failure);
+                } else {
+                    getLog().error("Could not uglify " + task.getInputFile().getPath() + ".", failure);
+                }
+                errors.add(MinificationError.of(task.getPath(), false, failure));
             }
+        }
+    }
 
+    /**
+     * Returns the text of a minified output: the minified code, and the comment linking its source map if the
+     * minifier generated one.
+     *
+     * @param result     the minified code and its source map
+     * @param outputFile
+     * @param javaScript true for JavaScript, false for CSS
+     * @return the parts of the output
+     */
+    private String[] getOutput(MinifierResult result, File outputFile, boolean javaScript) {
+        if (result.getSourceMap() == null) {
+            return new String[]{result.getCode()};
         }
+        return new String[]{result.getCode(),
+                SourceMaps.linkComment(getSourceMapFile(outputFile).getName(), javaScript)};
+    }
 
-        return count;
+    /**
+     * Writes a minified output and its source map, if the minifier generated one.
+     *
+     * @param result     the minified code and its source map
+     * @param outputFile
+     * @param output     the parts of the output, as {@link #getOutput} returns them
+     * @return the number of bytes of the written output
+     * @throws IOException
+     */
+    private long writeOutput(MinifierResult result, File outputFile, String[] output) throws IOException {
+        if (result.getSourceMap() != null) {
+            TextFiles.write(getSourceMapFile(outputFile), syncOutputs, result.getSourceMap());
+        }
+        return TextFiles.write(outputFile, syncOutputs, output);
     }
 
-    private void writeToFile(String output, File file, File outputFile) throws IOException{
-        final String encoding = "UTF-8";
+    /**
+     * Applies the fileTimeoutPolicy to a file or a bundle whose minification was stopped.
+     *
+     * @param timeout
+     * @param code    the source code
+     * @return the source code, as the output of the file for the "copy" policy
+     * @throws IOException for the "fail" policy
+     */
+    private MinifierResult onTimeout(Watchdog.Timeout timeout, String code) throws IOException {
+        if ("fail".equals(fileTimeoutPolicy)) {
+            throw new IOException(timeout.getMessage());
+        }
+        getLog().warn(timeout.getMessage() + " The source is copied unminified.");
+        return new MinifierResult(code);
+    }
 
-        try (OutputStreamWriter out = new OutputStreamWriter(new FileOutputStream(outputFile, false), encoding)) {
-            out.write(output);
-        } catch (IOException e) {
-            getLog().error("Could not uglify " + file.getPath() + ".", e);
-            throw e;
-        } finally {
-            Context.exit();
+    /**
+     * Copies a source that is minified already to its output file. With source maps, the map of the source,
+     * if it has one, is written next to the output and linked from it instead of the map of the source.
+     *
+     * @param task
+     * @param code           the source code
+     * @param inputSourceMap the source map of the source as JSON, or null
+     * @return the number of bytes of the written output
+     * @throws IOException
+     */
+    private long copyMinified(MinificationTask task, String code, String inputSourceMap) throws IOException {
+        File outputFile = task.getOutputFile();
+        if (inputSourceMap != null) {
+            File sourceMapFile = getSourceMapFile(outputFile);
+            TextFiles.write(sourceMapFile, syncOutputs, inputSourceMap);
+            return TextFiles.write(outputFile, syncOutputs, SourceMaps.unlink(code),
+                    SourceMaps.linkComment(sourceMapFile.getName(), task.isJavaScript()));
+        }
+        if (!outputFile.getAbsolutePath().equals(task.getInputFile().getAbsolutePath())) {
+            TextFiles.copy(task.getInputFile(), outputFile, syncOutputs);
+        }
+        return outputFile.length();
+    }
+
+    private File getSourceMapFile(File outputFile) {
+        return new File(outputFile.getPath() + ".map");
+    }
+
+    /**
+     * Renames a written minified file after the hash of its content, if outputs are hashed.
+     *
+     * @param outputFile
+     * @return the file as it is served
+     * @throws IOException
+     */
+    private File publish(File outputFile) throws IOException {
+        File publishedFile = assets == null ? outputFile : assets.publish(outputFile);
+        written.add(outputFile.getAbsoluteFile());
+        written.add(publishedFile.getAbsoluteFile());
+        return publishedFile;
+    }
+
+    /**
+     * @return the minified files and bundles written by the last run, with their logical and their hashed names
+     */
+    Set<File> getWrittenFiles() {
+        synchronized (written) {
+            return new HashSet<>(written);
+        }
+    }
+
+    /**
+     * @return the directory the names of the asset manifest are relative to
+     */
+    private File getAssetRoot() {
+        if (outputDirectory != null) {
+            return outputDirectory;
+        }
+        return sources != null ? getSourceDir() : assetManifestFile.getAbsoluteFile().getParentFile();
+    }
+
+    /**
+     * Copies a cached output to the output file, with its cached source map if source maps are written.
+     * The output is looked up in the session cache first, then in the minification cache.
+     *
+     * @param cache      the minification cache, or null
+     * @param key
+     * @param outputFile
+     * @return true if the output, and its source map, were cached
+     * @throws IOException
+     */
+    private boolean copyFromCache(MinificationCache cache, String key, File outputFile) throws IOException {
+        File sourceMapFile = sourceMaps ? getSourceMapFile(outputFile) : null;
+        if (sessionCache != null && sessionCache.copyTo(key, outputFile, sourceMapFile, syncOutputs)) {
+            sessionCacheHits.incrementAndGet();
+            return true;
+        }
+        if (cache == null || !cache.copyTo(key, outputFile, syncOutputs)
+                || sourceMaps && !cache.copyTo(MinificationCache.key(key, "source map"), sourceMapFile, syncOutputs)) {
+            return false;
+        }
+        if (sessionCache != null) {
+            sessionCache.put(key, outputFile, sourceMapFile);
+        }
+        return true;
+    }
+
+    /**
+     * Stores a written output in the session cache and the minification cache, with its source map if the
+     * minifier generated one.
+     *
+     * @param cache      the minification cache, or null
+     * @param key
+     * @param outputFile
+     * @param sourceMap  true if a source map was written next to the output
+     * @throws IOException
+     */
+    private void putInCache(MinificationCache cache, String key, File outputFile, boolean sourceMap)
+            throws IOException {
+        File sourceMapFile = sourceMap ? getSourceMapFile(outputFile) : null;
+        if (sessionCache != null) {
+            sessionCache.put(key, outputFile, sourceMapFile);
+        }
+        if (cache != null) {
+            cache.put(key, outputFile);
+            if (sourceMap) {
+                cache.put(MinificationCache.key(key, "source map"), sourceMapFile);
+            }
+        }
+    }
+
+    /**
+     * Minifies the files taken from a queue shared with the other workers.
+     * The minifiers are created on the worker thread and are not shared.
+     * A failing file is recorded and does not stop the worker.
+     * A source identical to one taken before, with the same options, is not minified again: its output is copied
+     * from the output of the first one, once written. Sources with source maps are not copied, as their maps and
+     * the comments linking them name their own files.
+     */
+    private class Worker implements Callable<Integer> {
+        // an original still running by then is minified again rather than waited for
+        private static final long ORIGINAL_WAIT_MILLIS = 60 * 1000;
+
+        private final List<MinificationTask> tasks;
+        private final AtomicInteger nextTask;
+        // the first task of the run by cache key, whose output identical sources copy
+        private final ConcurrentMap<String, MinificationTask> originals;
+        private final MinificationCache cache;
+        private final ExecutorService compressor;
+        private final List<Future<?>> compressions;
+
+        private Minifier jsMinifier;
+        private Minifier cssMinifier;
+        // small sources waiting to be minified in a single call, by type
+        private final Batch jsBatch = new Batch();
+        private final Batch cssBatch = new Batch();
+        private int count;
+        // heap allocated to create the minifiers for the current file, not counted as allocated for the file
+        private long engineAllocatedBytes;
+
+        Worker(List<MinificationTask> tasks, AtomicInteger nextTask, ConcurrentMap<String, MinificationTask> originals,
+               MinificationCache cache, ExecutorService compressor, List<Future<?>> compressions) {
+            this.tasks = tasks;
+            this.nextTask = nextTask;
+            this.originals = originals;
+            this.cache = cache;
+            this.compressor = compressor;
+            this.compressions = compressions;
+        }
+
+        @Override
+        public Integer call() {
+            try {
+                for (int i = nextTask.getAndIncrement(); i < tasks.size(); i = nextTask.getAndIncrement()) {
+                    MinificationTask task = tasks.get(i);
+                    long allocated = MinificationReport.threadAllocatedBytes();
+                    engineAllocatedBytes = 0;
+                    boolean batched = false;
+                    try {
+                        PendingFile file = readFile(task);
+                        if (file == null) {
+                            count++;
+                        } else {
+                            Minifier minifier = getMinifier(task);
+                            batched = batchSize > 0 && !sourceMaps && minifier instanceof BatchMinifier
+                                    && file.data.length() <= batchFileSize;
+                            if (batched) {
+                                addToBatch(task.isJavaScript() ? jsBatch : cssBatch, file);
+                            } else {
+                                minifyFile(file, minifier);
+                                count++;
+                            }
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        task.setFailure(e);
+                    } finally {
+                        if (!batched) {
+                            task.complete();
+                        }
+                    }
+                    if (!batched && allocated >= 0) {
+                        task.setAllocatedBytes(
+                                MinificationReport.threadAllocatedBytes() - allocated - engineAllocatedBytes);
+                    }
+                }
+                flush(jsBatch);
+                flush(cssBatch);
+            } finally {
+                // an error escaping the worker must not leave identical sources waiting for its batched tasks
+                abandon(jsBatch.files);
+                abandon(cssBatch.files);
+                if (jsMinifier != null) {
+                    jsMinifier.close();
+                }
+                if (cssMinifier != null) {
+                    cssMinifier.close();
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Reads a source and copies its output if it is minified already, identical to another source or cached.
+         *
+         * @param task
+         * @return the source to minify, or null if its output was copied
+         * @throws IOException
+         */
+        private PendingFile readFile(MinificationTask task) throws IOException {
+            File file = task.getInputFile();
+            long start = System.nanoTime();
+            TextFiles.Source source = TextFiles.read(file);
+            task.setInputBytes(source.getLength());
+            task.setHash(source.getHash());
+            String data = source.getCode();
+            String name = task.getPath();
+            String inputSourceMap = null;
+            String options = task.getOptions();
+            if (sourceMaps) {
+                name = SourceMaps.relativePath(task.getOutputFile().getParentFile(), file);
+                inputSourceMap = SourceMaps.findInputSourceMap(file, data, task.getOutputFile().getParentFile());
+                // the output links its map by name, and the map names its source relatively
+                options += " " + name + " " + task.getOutputFile().getName();
+                if (inputSourceMap != null) {
+                    options += " " + ContentHash.sha256(inputSourceMap.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            boolean alreadyMinified = detectMinified && MinifiedCode.isMinified(data);
+            task.addNanos(MinificationReport.Phase.READ, start);
+
+            if (alreadyMinified) {
+                start = System.nanoTime();
+                task.setOutputBytes(copyMinified(task, data, inputSourceMap));
+                task.setAlreadyMinified(true);
+                task.setPublishedFile(publish(task.getOutputFile()));
+                task.addNanos(MinificationReport.Phase.WRITE, start);
+                getLog().debug("Copied already minified " + file.getPath());
+                if (compressor != null) {
+                    precompress(task, null);
+                }
+                return null;
+            }
+
+            String key = MinificationCache.key(task.getHash(), options);
+            MinificationTask original = sourceMaps ? null : originals.putIfAbsent(key, task);
+            if (original != null) {
+                start = System.nanoTime();
+                if (copyFromOriginal(task, original)) {
+                    task.addNanos(MinificationReport.Phase.WRITE, start);
+                    task.setDeduplicated(true);
+                    getLog().debug("Copied " + file.getPath() + " from identical " + original.getPath());
+                    if (compressor != null) {
+                        precompress(task, null);
+                    }
+                    return null;
+                }
+                task.addNanos(MinificationReport.Phase.READ, start);
+            }
+
+            if (cache != null || sessionCache != null) {
+                start = System.nanoTime();
+                if (copyFromCache(cache, key, task.getOutputFile())) {
+                    task.addNanos(MinificationReport.Phase.WRITE, start);
+                    task.setCached(true);
+                    task.setOutputBytes(task.getOutputFile().length());
+                    task.setPublishedFile(publish(task.getOutputFile()));
+                    getLog().debug("Copied " + file.getPath() + " from the minification cache");
+                    if (compressor != null) {
+                        precompress(task, null);
+                    }
+                    return null;
+                }
+                task.addNanos(MinificationReport.Phase.READ, start);
+            }
+            return new PendingFile(task, data, name, inputSourceMap, key);
+        }
+
+        /**
+         * Returns the minifier of the type of a source, created on the first use of the type.
+         *
+         * @param task
+         * @return the minifier
+         */
+        private Minifier getMinifier(MinificationTask task) {
+            long start = System.nanoTime();
+            long allocated = MinificationReport.threadAllocatedBytes();
+            Minifier minifier;
+            if (task.isJavaScript()) {
+                if (jsMinifier == null) {
+                    jsMinifier = jsProvider.createMinifier(minifierOptions, getLog());
+                }
+                minifier = jsMinifier;
+            } else {
+                if (cssMinifier == null) {
+                    cssMinifier = cssProvider.createMinifier(minifierOptions, getLog());
+                }
+                minifier = cssMinifier;
+            }
+            engineAllocatedBytes += MinificationReport.threadAllocatedBytes() - allocated;
+            task.addNanos(MinificationReport.Phase.ENGINE_INIT, start);
+            return minifier;
+        }
+
+        /**
+         * Closes the minifier of a type whose engine was stopped, a new minifier is created for the next source.
+         *
+         * @param javaScript
+         */
+        private void discardMinifier(boolean javaScript) {
+            if (javaScript) {
+                jsMinifier.close();
+                jsMinifier = null;
+            } else {
+                cssMinifier.close();
+                cssMinifier = null;
+            }
+        }
+
+        private void minifyFile(PendingFile file, Minifier minifier) throws IOException {
+            MinificationTask task = file.task;
+            getLog().debug("Uglifying " + task.getInputFile().getPath());
+            long start = System.nanoTime();
+            MinifierResult result;
+            Watchdog.watch(task.getInputFile().getPath(), fileTimeout, slowFileWarning, getLog());
+            try {
+                result = minifier instanceof SourceMapMinifier
+                        ? ((SourceMapMinifier) minifier).minify(file.name, file.data, file.inputSourceMap)
+                        : minifier.minify(file.name, file.data);
+            } catch (Watchdog.Timeout e) {
+                discardMinifier(task.isJavaScript());
+                task.setTimedOut(true);
+                result = onTimeout(e, file.data);
+            } finally {
+                Watchdog.unwatch();
+            }
+            task.addNanos(MinificationReport.Phase.MINIFY, start);
+            writeFile(file, result);
+        }
+
+        private void writeFile(PendingFile file, MinifierResult result) throws IOException {
+            MinificationTask task = file.task;
+            for (String warning : result.getWarnings()) {
+                getLog().warn(task.getInputFile().getPath() + ": " + warning);
+            }
+
+            long start = System.nanoTime();
+            String[] output = getOutput(result, task.getOutputFile(), task.isJavaScript());
+            task.setOutputBytes(writeOutput(result, task.getOutputFile(), output));
+            if ((cache != null || sessionCache != null) && !task.isTimedOut()) {
+                putInCache(cache, file.key, task.getOutputFile(), result.getSourceMap() != null);
+            }
+            task.setPublishedFile(publish(task.getOutputFile()));
+            task.addNanos(MinificationReport.Phase.WRITE, start);
+
+            if (compressor != null) {
+                precompress(task, output);
+            }
+        }
+
+        private void addToBatch(Batch batch, PendingFile file) {
+            batch.files.add(file);
+            batch.bytes += file.task.getInputBytes();
+            if (batch.bytes >= batchSize) {
+                flush(batch);
+            }
+        }
+
+        /**
+         * Minifies the sources of a batch in a single call and writes their outputs. The sources of a batch that
+         * fails as a whole, e.g. on the file timeout, are minified again one by one.
+         * The time and the heap allocated for the batch are shared by its files in proportion to their sizes.
+         *
+         * @param batch
+         */
+        private void flush(Batch batch) {
+            if (batch.files.isEmpty()) {
+                return;
+            }
+            List<PendingFile> files = new ArrayList<>(batch.files);
+            long bytes = batch.bytes;
+            batch.files.clear();
+            batch.bytes = 0;
+
+            try {
+                minifyBatch(files, bytes);
+            } finally {
+                abandon(files);
+            }
+        }
+
+        /**
+         * Minifies the files of a batch in a single call, or one by one if the batch fails.
+         *
+         * @param files
+         * @param bytes the size of the sources of the batch
+         */
+        private void minifyBatch(List<PendingFile> files, long bytes) {
+            long allocated = MinificationReport.threadAllocatedBytes();
+            MinificationTask first = files.get(0).task;
+            Map<String, String> sources = new LinkedHashMap<>();
+            for (PendingFile file : files) {
+                sources.put(file.name, file.data);
+            }
+            getLog().debug("Uglifying a batch of " + files.size() + " file(s)");
+            long start = System.nanoTime();
+            List<MinifierResult> results = null;
+            Watchdog.watch("a batch of " + files.size() + " files", fileTimeout, slowFileWarning, getLog());
+            try {
+                results = ((BatchMinifier) getMinifier(first)).minifyBatch(sources);
+            } catch (Watchdog.Timeout e) {
+                discardMinifier(first.isJavaScript());
+                getLog().debug(e.getMessage() + " Its files are minified one by one.");
+            } catch (RuntimeException e) {
+                getLog().debug("Failure to minify a batch, its files are minified one by one: " + e.getMessage());
+            } finally {
+                Watchdog.unwatch();
+            }
+            long nanos = System.nanoTime() - start;
+
+            for (int i = 0; i < files.size(); i++) {
+                PendingFile file = files.get(i);
+                MinificationTask task = file.task;
+                try {
+                    if (results == null) {
+                        minifyFile(file, getMinifier(task));
+                    } else if (results.get(i).getFailure() != null) {
+                        throw results.get(i).getFailure();
+                    } else {
+                        task.addBatchNanos(MinificationReport.Phase.MINIFY, nanos, bytes);
+                        writeFile(file, results.get(i));
+                    }
+                    count++;
+                } catch (IOException | RuntimeException e) {
+                    task.setFailure(e);
+                } finally {
+                    task.complete();
+                }
+            }
+            if (allocated >= 0) {
+                long batchAllocated = MinificationReport.threadAllocatedBytes() - allocated;
+                for (PendingFile file : files) {
+                    file.task.setAllocatedBytes(bytes == 0 ? 0 : batchAllocated * file.task.getInputBytes() / bytes);
+                }
+            }
+        }
+
+        /**
+         * Fails and completes the batched tasks left unfinished by an error, e.g. a StackOverflowError in the engine.
+         *
+         * @param files
+         */
+        private void abandon(List<PendingFile> files) {
+            for (PendingFile file : files) {
+                if (!file.task.isComplete()) {
+                    file.task.setFailure(new IllegalStateException("The worker stopped before minifying "
+                            + file.task.getPath() + "."));
+                    file.task.complete();
+                }
+            }
+        }
+
+        /**
+         * Copies the output of an identical source once it is written. The copy of an output left unminified by a
+         * timeout is not recorded in the manifest either.
+         *
+         * @param task
+         * @param original the first task of the run with the same source and options
+         * @return true if the output was copied, false if the original failed or is still running
+         * @throws IOException
+         */
+        private boolean copyFromOriginal(MinificationTask task, MinificationTask original) throws IOException {
+            if (!original.isComplete()) {
+                // the original may wait in a batch of this worker
+                flush(jsBatch);
+                flush(cssBatch);
+            }
+            if (!original.awaitCompletion(ORIGINAL_WAIT_MILLIS) || original.getFailure() != null) {
+                return false;
+            }
+            // a copy rather than a link, as the outputs are rewritten in place when their sources change
+            TextFiles.copy(original.getPublishedFile(), task.getOutputFile(), syncOutputs);
+            task.setTimedOut(original.isTimedOut());
+            task.setOutputBytes(task.getOutputFile().length());
+            task.setPublishedFile(publish(task.getOutputFile()));
+            return true;
+        }
+
+        /**
+         * Compresses the output of a file on the compression threads, while this worker minifies the next file.
+         * The output just minified is compressed from memory; an output copied from elsewhere is read back.
+         * A failure is recorded on the task like a minification failure.
+         *
+         * @param task
+         * @param output the parts of the minified output, or null to read the written output
+         */
+        private void precompress(final MinificationTask task, final String[] output) {
+            compressions.add(compressor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    long start = System.nanoTime();
+                    try {
+                        if (output == null) {
+                            precompressor.compress(task.getPublishedFile());
+                        } else {
+                            precompressor.compress(TextFiles.toBytes(output), task.getPublishedFile());
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        task.setFailure(e);
+                    }
+                    task.addNanos(MinificationReport.Phase.COMPRESS, start);
+                }
+            }));
         }
     }
 
+    /**
+     * A source read by a worker, to be minified.
+     */
+    private static final class PendingFile {
+        private final MinificationTask task;
+        private final String data;
+        // the name of the source in the minifier and its source map
+        private final String name;
+        private final String inputSourceMap;
+        // the key of its output in the caches
+        private final String key;
+
+        PendingFile(MinificationTask task, String data, String name, String inputSourceMap, String key) {
+            this.task = task;
+            this.data = data;
+            this.name = name;
+            this.inputSourceMap = inputSourceMap;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Small sources of a type minified together in a single call, up to the batchSize.
+     */
+    private static final class Batch {
+        private final List<PendingFile> files = new ArrayList<>();
+        private long bytes;
+    }
+
     /**
      * Creates the {@link java.io.File} instance of the new minified file.
      *
@@ -159,7 +1557,7 @@ public class UglifyMojo extends AbstractMojo {
      * @return a {@link java.io.File} instance
      * @throws IOException
      */
-    private File getOutputFile(File inputFile) throws IOException {
+    File getOutputFile(File inputFile) throws IOException {
         // replace ending
         String fileName = keepName ? inputFile.getName() : inputFile.getName().replaceAll(".js$", ".min.js").replaceAll(".css$", ".min.css");
 
@@ -178,12 +1576,27 @@ public class UglifyMojo extends AbstractMojo {
 
     }
 
+    FileSet getSources() {
+        return sources;
+    }
+
+    List<Bundle> getBundles() {
+        return bundles;
+    }
+
+    /**
+     * @return true if the sources are replaced by their minified files
+     */
+    boolean isReplacingSources() {
+        return keepName && outputDirectory == null;
+    }
+
     /**
      * Returns {@link File directory} containing JavaScript/CSS source {@link File files}.
      *
      * @return {@link File Directory} containing JavaScript/CSS source {@link File files}
      */
-    private File getSourceDir() {
+    File getSourceDir() {
         return new File(sources.getDirectory());
     }
 
@@ -192,7 +1605,7 @@ public class UglifyMojo extends AbstractMojo {
      *
      * @return Array of JavaScript/CSS sources {@link File files}
      */
-    private File[] getSourceFiles() {
+    File[] getSourceFiles() {
         getLog().info(sources.getDirectory());
         FileSetManager fileSetManager = new FileSetManager();
         String[] includedFiles = fileSetManager.getIncludedFiles(sources);
@@ -245,7 +1658,7 @@ public class UglifyMojo extends AbstractMojo {
     }
 
     private void setMinifyJSEnabled(boolean minifyJSEnabled) {
-        UglifyMojo.minifyJSEnabled = minifyJSEnabled;
+        this.minifyJSEnabled = minifyJSEnabled;
     }
 
     private boolean isMinifyCSSEnabled() {
@@ -253,6 +1666,6 @@ public class UglifyMojo extends AbstractMojo {
     }
 
     private void setMinifyCSSEnabled(boolean minifyCSSEnabled) {
-        UglifyMojo.minifyCSSEnabled = minifyCSSEnabled;
+        this.minifyCSSEnabled = minifyCSSEnabled;
     }
 }
@@ -0,0 +1,275 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Goal which minifies the sources like the uglify goal, then watches the sources and bundles directories and
+ * minifies the changed files again as soon as they are saved, for development. The engines are compiled once
+ * and kept warm between changes. The goal runs until Maven is stopped, e.g. with Ctrl+C.
+ */
+@Mojo(name = "watch")
+public class WatchMojo extends UglifyMojo {
+
+    /**
+     * Time in milliseconds without new changes before the changed files are minified, so that a burst of changes
+     * (an editor saving a file in several steps, a checkout) is minified at once.
+     */
+    @Parameter
+    private int watchDebounce = 50;
+
+    // outputs written while watching, whose changes are ignored
+    private final Set<Path> outputs = new HashSet<>();
+
+    // counted down once the directories are watched
+    private final CountDownLatch watching = new CountDownLatch(1);
+
+    public void execute() throws MojoExecutionException {
+        if (getSources() != null && isReplacingSources()) {
+            throw new MojoExecutionException("The watch goal cannot replace the sources by their minified files, "
+                    + "set an outputDirectory or set keepName to false.");
+        }
+
+        super.execute();
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            warmUp();
+            Map<WatchKey, Path> directories = new HashMap<>();
+            for (Path directory : getWatchedDirectories()) {
+                register(watchService, directory, directories, null);
+            }
+            getLog().info("Watching " + getWatchedDirectories() + " for changes, stop with Ctrl+C.");
+            watching.countDown();
+
+            while (!Thread.currentThread().isInterrupted()) {
+                Set<Path> changed = new LinkedHashSet<>();
+                WatchKey key = watchService.take();
+                boolean overflow = false;
+                while (key != null) {
+                    overflow |= pollEvents(watchService, key, directories, changed);
+                    key = watchService.poll(watchDebounce, TimeUnit.MILLISECONDS);
+                }
+                try {
+                    minifyChanged(changed, overflow);
+                } catch (MojoExecutionException e) {
+                    // the errors are listed by the run, the next save may fix them
+                    getLog().error(e.getMessage() + " Watching for the next change.");
+                }
+            }
+        } catch (InterruptedException | InterruptedIOException | ClosedByInterruptException e) {
+            // stopped while waiting for a change, or while a run was writing its outputs
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failure to watch the sources.", e);
+        }
+    }
+
+    /**
+     * Waits until the sources are minified a first time and their directories are watched.
+     *
+     * @param timeout
+     * @param unit
+     * @return true if the directories are watched, false if the timeout elapsed
+     * @throws InterruptedException
+     */
+    boolean awaitWatching(long timeout, TimeUnit unit) throws InterruptedException {
+        return watching.await(timeout, unit);
+    }
+
+    /**
+     * Takes the changed paths of a key. The files of new directories are changed too, as they may have been
+     * written before the directory was registered. The temporary files the outputs are written to are ignored.
+     *
+     * @param watchService
+     * @param key
+     * @param directories the watched directory of every key
+     * @param changed     the changed paths
+     * @return true if events were lost
+     * @throws IOException
+     */
+    private boolean pollEvents(WatchService watchService, WatchKey key, Map<WatchKey, Path> directories,
+                               Set<Path> changed) throws IOException {
+        boolean overflow = false;
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                overflow = true;
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (TextFiles.isTemporary(path.getFileName().toString())) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                register(watchService, path, directories, changed);
+            } else {
+                changed.add(path);
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+        return overflow;
+    }
+
+    /**
+     * Minifies the changed sources that are included in the sources, deletes the outputs of the deleted ones,
+     * and minifies the bundles again if one of their sources changed.
+     *
+     * @param changed  the changed paths
+     * @param overflow true if changes were lost, so that every source is checked
+     * @throws IOException
+     * @throws MojoExecutionException
+     */
+    private void minifyChanged(Set<Path> changed, boolean overflow) throws IOException, MojoExecutionException {
+        long start = System.nanoTime();
+        Set<Path> included = new HashSet<>();
+        if (getSources() != null) {
+            for (File file : getSourceFiles()) {
+                included.add(normalize(file.toPath()));
+            }
+        }
+
+        List<File> files = new ArrayList<>();
+        List<File> deleted = new ArrayList<>();
+        boolean bundled = overflow;
+        for (Path path : changed) {
+            path = normalize(path);
+            if (outputs.contains(path)) {
+                continue;
+            }
+            if (included.contains(path)) {
+                files.add(path.toFile());
+            } else if (!Files.exists(path) && getSources() != null && isIn(path, getSources().getDirectory())) {
+                deleted.add(path.toFile());
+            }
+            bundled |= isBundled(path);
+        }
+        if (!overflow && files.isEmpty() && deleted.isEmpty() && !bundled) {
+            return;
+        }
+
+        int count = overflow ? run(null, null, true) : run(files.toArray(new File[0]), deleted, bundled);
+        for (File file : getWrittenFiles()) {
+            outputs.add(normalize(file.toPath()));
+            outputs.add(normalize(new File(file.getPath() + ".map").toPath()));
+            for (File sibling : Precompressor.getSiblings(file)) {
+                outputs.add(normalize(sibling.toPath()));
+            }
+        }
+        getLog().info("Minified " + count + " changed file(s) in " + (System.nanoTime() - start) / 1000000
+                + " milliseconds.");
+    }
+
+    /**
+     * @return the sources directory and the directories of the bundles
+     */
+    private Collection<Path> getWatchedDirectories() {
+        Set<Path> directories = new LinkedHashSet<>();
+        if (getSources() != null) {
+            directories.add(normalize(new File(getSources().getDirectory()).toPath()));
+        }
+        if (getBundles() != null) {
+            for (Bundle bundle : getBundles()) {
+                if (bundle.getSources() != null) {
+                    directories.add(normalize(new File(bundle.getSources().getDirectory()).toPath()));
+                }
+            }
+        }
+        return directories;
+    }
+
+    /**
+     * Watches a directory and its sub directories.
+     *
+     * @param watchService
+     * @param directory
+     * @param directories the watched directory of every key
+     * @param files       collects the files found in the directories, or null
+     * @throws IOException
+     */
+    private void register(final WatchService watchService, Path directory, final Map<WatchKey, Path> directories,
+                          final Set<Path> files) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                directories.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (files != null) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private boolean isBundled(Path path) {
+        if (getBundles() != null) {
+            for (Bundle bundle : getBundles()) {
+                if (bundle.getSources() != null && isIn(path, bundle.getSources().getDirectory())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isIn(Path path, String directory) {
+        return path.startsWith(normalize(new File(directory).toPath()));
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
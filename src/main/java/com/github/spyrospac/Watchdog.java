@@ -0,0 +1,130 @@
+package com.github.spyrospac;
+
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+import org.apache.maven.plugin.logging.Log;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.ContextFactory;
+
+import java.util.Locale;
+
+/**
+ * Rhino context factory watching the time spent on a file through Rhino's instruction observer, so that
+ * a pathological source cannot block the build: Rhino calls back every {@link #INSTRUCTION_THRESHOLD} instructions,
+ * in the interpreter and in the library classes compiled by {@link LibraryCompiler} alike.
+ * A file that runs longer than the warning time is logged as it goes, and a file that runs longer than its timeout
+ * is stopped with a {@link Timeout} error, which the scripts cannot catch.
+ * The contexts of the minifiers must be entered with {@link #enterWatched()}.
+ */
+final class Watchdog extends ContextFactory {
+    /**
+     * Number of instructions between two checks of the time, a fraction of a millisecond of script.
+     */
+    static final int INSTRUCTION_THRESHOLD = 100000;
+
+    private static final Watchdog INSTANCE = new Watchdog();
+
+    private static final ThreadLocal<Deadline> DEADLINE = new ThreadLocal<>();
+
+    private Watchdog() {
+    }
+
+    /**
+     * Enters a context of the current thread that observes the instructions it runs.
+     *
+     * @return the context, to be exited with {@link Context#exit()}
+     */
+    static Context enterWatched() {
+        return INSTANCE.enterContext();
+    }
+
+    /**
+     * Starts watching the file minified by the current thread, until {@link #unwatch()}.
+     *
+     * @param name           the file, in the messages
+     * @param timeoutMillis  the time after which the minification is stopped, 0 for no limit
+     * @param warningMillis  the time after which the minification is logged, and again each time it elapses,
+     *                       0 to log nothing
+     * @param log
+     */
+    static void watch(final String name, final long timeoutMillis, final long warningMillis, final Log log) {
+        if (timeoutMillis > 0 || warningMillis > 0) {
+            DEADLINE.set(new Deadline(name, timeoutMillis, warningMillis, log));
+        }
+    }
+
+    static void unwatch() {
+        DEADLINE.remove();
+    }
+
+    @Override
+    protected Context makeContext() {
+        Context cx = super.makeContext();
+        // also makes the scripts compiled at run time call back
+        cx.setInstructionObserverThreshold(INSTRUCTION_THRESHOLD);
+        return cx;
+    }
+
+    @Override
+    protected void observeInstructionCount(final Context cx, final int instructionCount) {
+        Deadline deadline = DEADLINE.get();
+        if (deadline != null) {
+            deadline.check();
+        }
+    }
+
+    /**
+     * Stops a minification that took longer than its timeout. An {@link Error}, as the scripts can catch exceptions.
+     */
+    static final class Timeout extends Error {
+        private static final long serialVersionUID = 1L;
+
+        Timeout(final String message) {
+            super(message);
+        }
+    }
+
+    private static final class Deadline {
+        private final String name;
+        private final long start = System.nanoTime();
+        private final long timeoutNanos;
+        private final long warningNanos;
+        private final Log log;
+        private long nextWarning;
+
+        Deadline(final String name, final long timeoutMillis, final long warningMillis, final Log log) {
+            this.name = name;
+            this.timeoutNanos = timeoutMillis * 1000000;
+            this.warningNanos = warningMillis * 1000000;
+            this.log = log;
+            this.nextWarning = warningNanos;
+        }
+
+        void check() {
+            long elapsed = System.nanoTime() - start;
+            if (timeoutNanos > 0 && elapsed >= timeoutNanos) {
+                throw new Timeout("Minifying " + name + " took longer than the file timeout of "
+                        + timeoutNanos / 1000000 + " ms.");
+            }
+            if (warningNanos > 0 && elapsed >= nextWarning) {
+                log.warn(String.format(Locale.ROOT, "Still minifying %s after %.1f s.", name, elapsed / 1e9));
+                nextWarning += warningNanos;
+            }
+        }
+    }
+}
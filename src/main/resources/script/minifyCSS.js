@@ -14,6 +14,30 @@
  * limitations under the License.
  *
  */
-minifyCSS = function (code) {
-    return csso.minify(code).css;
+minifyCSS = function (code, filename, inputSourceMap) {
+    if (!filename) {
+        return csso.minify(code).css;
+    }
+
+    filename = String(filename);
+    var result = csso.minify(code, {sourceMap: true, filename: filename});
+    // the output file is named by the sourceMappingURL comment
+    result.map._file = null;
+    if (inputSourceMap) {
+        result.map.applySourceMap(new MOZ_SourceMap.SourceMapConsumer(String(inputSourceMap)), filename);
+    }
+    return {code: result.css, map: result.map.toString()};
+};
+
+minifyCSSBatch = function (codes) {
+    var results = [];
+    for (var i = 0; i < codes.length; i++) {
+        try {
+            results.push({code: csso.minify(codes[i]).css});
+        } catch (e) {
+            // the error object, with the position of a syntax error
+            results.push({error: e});
+        }
+    }
+    return results;
 };
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2019 Spyros Pachomis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+/**
+ * Minimal SourceMapGenerator and SourceMapConsumer with the API of Mozilla's source-map library, exposed as the
+ * MOZ_SourceMap global that UglifyJS expects. The consumer also chains input maps into the maps of CSSO.
+ * Only the mappings of version 3 maps are supported, not the sections of index maps.
+ */
+MOZ_SourceMap = (function () {
+    var BASE64 = 'ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/';
+
+    function encodeVlq(value) {
+        var vlq = value < 0 ? (-value << 1) + 1 : value << 1;
+        var encoded = '';
+        do {
+            var digit = vlq & 31;
+            vlq >>>= 5;
+            if (vlq > 0) {
+                digit |= 32;
+            }
+            encoded += BASE64.charAt(digit);
+        } while (vlq > 0);
+        return encoded;
+    }
+
+    function indexOf(list, index, value) {
+        if (!Object.prototype.hasOwnProperty.call(index, value)) {
+            index[value] = list.length;
+            list.push(value);
+        }
+        return index[value];
+    }
+
+    function SourceMapGenerator(options) {
+        options = options || {};
+        this._file = options.file;
+        this._sourceRoot = options.sourceRoot;
+        this._sources = [];
+        this._sourceIndex = {};
+        this._names = [];
+        this._nameIndex = {};
+        this._contents = {};
+        this._mappings = [];
+    }
+
+    SourceMapGenerator.prototype.addMapping = function (mapping) {
+        var generated = mapping.generated;
+        var original = mapping.original;
+        var hasSource = mapping.source != null && original != null;
+        this._mappings.push({
+            generatedLine: generated.line,
+            generatedColumn: generated.column,
+            source: hasSource ? indexOf(this._sources, this._sourceIndex, String(mapping.source)) : null,
+            originalLine: hasSource ? original.line : null,
+            originalColumn: hasSource ? original.column : null,
+            name: hasSource && mapping.name != null ? indexOf(this._names, this._nameIndex, String(mapping.name)) : null
+        });
+    };
+
+    SourceMapGenerator.prototype.setSourceContent = function (source, content) {
+        indexOf(this._sources, this._sourceIndex, String(source));
+        this._contents[source] = content;
+    };
+
+    SourceMapGenerator.prototype.toJSON = function () {
+        var mappings = this._mappings.slice().sort(function (a, b) {
+            return a.generatedLine - b.generatedLine || a.generatedColumn - b.generatedColumn;
+        });
+        var encoded = '';
+        var line = 1, column = 0, source = 0, originalLine = 0, originalColumn = 0, name = 0;
+        for (var i = 0; i < mappings.length; i++) {
+            var mapping = mappings[i];
+            if (mapping.generatedLine !== line) {
+                while (line < mapping.generatedLine) {
+                    encoded += ';';
+                    line++;
+                }
+                column = 0;
+            } else if (i > 0) {
+                encoded += ',';
+            }
+            encoded += encodeVlq(mapping.generatedColumn - column);
+            column = mapping.generatedColumn;
+            if (mapping.source !== null) {
+                encoded += encodeVlq(mapping.source - source)
+                    + encodeVlq(mapping.originalLine - 1 - originalLine)
+                    + encodeVlq(mapping.originalColumn - originalColumn);
+                source = mapping.source;
+                originalLine = mapping.originalLine - 1;
+                originalColumn = mapping.originalColumn;
+                if (mapping.name !== null) {
+                    encoded += encodeVlq(mapping.name - name);
+                    name = mapping.name;
+                }
+            }
+        }
+
+        var map = {version: 3, sources: this._sources.slice(), names: this._names.slice(), mappings: encoded};
+        if (this._file != null) {
+            map.file = this._file;
+        }
+        if (this._sourceRoot != null) {
+            map.sourceRoot = this._sourceRoot;
+        }
+        var contents = this._contents;
+        var hasContents = false;
+        var sourcesContent = this._sources.map(function (source) {
+            if (Object.prototype.hasOwnProperty.call(contents, source)) {
+                hasContents = true;
+                return contents[source];
+            }
+            return null;
+        });
+        if (hasContents) {
+            map.sourcesContent = sourcesContent;
+        }
+        return map;
+    };
+
+    SourceMapGenerator.prototype.toString = function () {
+        return JSON.stringify(this.toJSON());
+    };
+
+    function SourceMapConsumer(map) {
+        if (typeof map === 'string' || map instanceof String) {
+            map = JSON.parse(String(map).replace(/^\)\]\}'/, ''));
+        }
+        if (map.sections) {
+            throw new Error('Index source maps are not supported');
+        }
+
+        var root = map.sourceRoot ? String(map.sourceRoot).replace(/\/?$/, '/') : '';
+        var sources = (map.sources || []).map(function (source) {
+            return source == null ? null : root + source;
+        });
+        this.file = map.file;
+        this.sources = sources;
+        this._sources = {
+            toArray: function () {
+                return sources.slice();
+            }
+        };
+        this._contents = map.sourcesContent || [];
+        this._names = map.names || [];
+        this._mappings = decodeMappings(String(map.mappings || ''));
+    }
+
+    function decodeMappings(encoded) {
+        var mappings = [];
+        var line = 1, column = 0, source = 0, originalLine = 0, originalColumn = 0, name = 0;
+        var position = 0;
+        while (position < encoded.length) {
+            var c = encoded.charAt(position);
+            if (c === ';') {
+                line++;
+                column = 0;
+                position++;
+                continue;
+            }
+            if (c === ',') {
+                position++;
+                continue;
+            }
+
+            var fields = [];
+            while (position < encoded.length && encoded.charAt(position) !== ',' && encoded.charAt(position) !== ';') {
+                var value = 0, shift = 0, digit;
+                do {
+                    digit = BASE64.indexOf(encoded.charAt(position++));
+                    if (digit < 0) {
+                        throw new Error('Invalid base64 VLQ in source map mappings');
+                    }
+                    value += (digit & 31) << shift;
+                    shift += 5;
+                } while (digit & 32);
+                fields.push(value & 1 ? -(value >>> 1) : value >>> 1);
+            }
+
+            column += fields[0];
+            var mapping = {generatedLine: line, generatedColumn: column, source: null, line: null, column: null, name: null};
+            if (fields.length > 3) {
+                source += fields[1];
+                originalLine += fields[2];
+                originalColumn += fields[3];
+                mapping.source = source;
+                mapping.line = originalLine + 1;
+                mapping.column = originalColumn;
+                if (fields.length > 4) {
+                    name += fields[4];
+                    mapping.name = name;
+                }
+            }
+            mappings.push(mapping);
+        }
+        return mappings.sort(function (a, b) {
+            return a.generatedLine - b.generatedLine || a.generatedColumn - b.generatedColumn;
+        });
+    }
+
+    /**
+     * Finds the original position of the closest mapping at or before a generated position on the same line.
+     */
+    SourceMapConsumer.prototype.originalPositionFor = function (position) {
+        var mappings = this._mappings;
+        var low = 0, high = mappings.length - 1, found = null;
+        while (low <= high) {
+            var middle = (low + high) >> 1;
+            var mapping = mappings[middle];
+            var order = mapping.generatedLine - position.line || mapping.generatedColumn - position.column;
+            if (order <= 0) {
+                found = mapping;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        if (found === null || found.generatedLine !== position.line || found.source === null) {
+            return {source: null, line: null, column: null, name: null};
+        }
+        return {
+            source: this.sources[found.source],
+            line: found.line,
+            column: found.column,
+            name: found.name === null ? null : this._names[found.name]
+        };
+    };
+
+    SourceMapConsumer.prototype.sourceContentFor = function (source, nullOnMissing) {
+        var index = this.sources.indexOf(source);
+        if (index >= 0 && this._contents[index] != null) {
+            return this._contents[index];
+        }
+        if (nullOnMissing) {
+            return null;
+        }
+        throw new Error('"' + source + '" is not in the source map');
+    };
+
+    return {SourceMapGenerator: SourceMapGenerator, SourceMapConsumer: SourceMapConsumer};
+})();
@@ -14,13 +14,33 @@
  * limitations under the License.
  *
  */
-uglifyJavascript = function (code, mangle) {
-    var mc = mangle === 'true';
-    var options = {mangle: mc};
+uglifyJavascript = function (code, mangle, sourceMap, uglifyOptions) {
+    // a copy, as UglifyJS sets the options it derives on the object it is given
+    var options = {};
+    for (var name in uglifyOptions) {
+        options[name] = uglifyOptions[name];
+    }
+    options.mangle = mangle;
+    if (sourceMap) {
+        options.sourceMap = JSON.parse(String(sourceMap));
+    }
     var result = UglifyJS.minify(code, options);
     if (result.error) {
         throw result.error;
     }
 
-    return result.code;
+    return sourceMap ? {code: result.code, map: result.map} : result.code;
+};
+
+uglifyJavascriptBatch = function (codes, mangle, uglifyOptions) {
+    var results = [];
+    for (var i = 0; i < codes.length; i++) {
+        try {
+            results.push({code: uglifyJavascript(codes[i], mangle, null, uglifyOptions)});
+        } catch (e) {
+            // the error object, with the position of a syntax error
+            results.push({error: e});
+        }
+    }
+    return results;
 };
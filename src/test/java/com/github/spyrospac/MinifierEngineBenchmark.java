@@ -0,0 +1,207 @@
+package com.github.spyrospac;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ServiceLoader;
+
+/**
+ * Compares the time per file of the first minified file with the later ones, for an engine compiled per file
+ * (the former behaviour) and for an engine compiled once and shared, then compares the Rhino interpreter with
+ * the bytecode compiled engine on the test corpus and on a synthetic 2MB bundle, and finally compares every
+ * {@link MinifierProvider} backend found on the classpath on the test corpus.
+ * Not a unit test, run it with the test classpath, e.g. from the IDE, optionally passing the number of rounds.
+ */
+public class MinifierEngineBenchmark {
+    private static final File SCRIPTS = new File("src/test/resources/unit/basic-test/script/uglifyJavascriptTest.js");
+    private static final File STYLES = new File("src/test/resources/unit/basic-test/css/testcss.css");
+    private static final int BUNDLE_SIZE = 2 * 1024 * 1024;
+
+    public static void main(String[] args) throws IOException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        Log log = new SystemStreamLog();
+
+        log.info("JavaScript, engine per file:  " + perFileEngine(log, rounds));
+        log.info("JavaScript, shared engine:    " + sharedEngine(log, rounds));
+        log.info("CSS, engine per file:         " + perFileCssEngine(log, rounds));
+        log.info("CSS, shared engine:           " + sharedCssEngine(log, rounds));
+
+        String bundle = syntheticBundle();
+        for (int optimizationLevel : new int[]{JavaScriptEngine.INTERPRETED, 0, 9}) {
+            log.info("Optimization level " + optimizationLevel + ", JavaScript corpus: "
+                    + corpus(log, optimizationLevel, rounds));
+            log.info("Optimization level " + optimizationLevel + ", CSS corpus:        "
+                    + cssCorpus(log, optimizationLevel, rounds));
+            log.info("Optimization level " + optimizationLevel + ", 2MB bundle:        "
+                    + bundle(log, optimizationLevel, bundle));
+        }
+
+        for (MinifierProvider provider : ServiceLoader.load(MinifierProvider.class)) {
+            log.info("Backend " + provider.getName() + ": " + backend(log, provider, rounds));
+        }
+
+        for (String preset : JsOptions.PRESETS) {
+            log.info("Preset " + preset + ": " + preset(log, preset, rounds));
+        }
+    }
+
+    private static Timings perFileEngine(Log log, int rounds) throws IOException {
+        Timings timings = new Timings();
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            try (UglifyJavaScriptContext context = new UglifyJavaScriptContext(
+                    UglifyJavaScriptContext.compileEngine(log, 0, "uglifyjs.js", "uglifyJavascript.js"))) {
+                context.invokeUglifyJSFunctionOnFile(SCRIPTS, true);
+            }
+            timings.add(System.nanoTime() - start);
+        }
+        return timings;
+    }
+
+    private static Timings sharedEngine(Log log, int rounds) throws IOException {
+        return corpus(log, 0, rounds);
+    }
+
+    private static Timings perFileCssEngine(Log log, int rounds) throws IOException {
+        Timings timings = new Timings();
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            try (CleanCSSJavaScriptContext context = new CleanCSSJavaScriptContext(
+                    CleanCSSJavaScriptContext.compileEngine(log, 0, "clean-css-v4.2.1.js", "minifyCSS.js"))) {
+                context.invokeCleanCssFunctionOnFile(STYLES);
+            }
+            timings.add(System.nanoTime() - start);
+        }
+        return timings;
+    }
+
+    private static Timings sharedCssEngine(Log log, int rounds) throws IOException {
+        return cssCorpus(log, 0, rounds);
+    }
+
+    private static Timings corpus(Log log, int optimizationLevel, int rounds) throws IOException {
+        Timings timings = new Timings();
+        long start = System.nanoTime();
+        try (UglifyJavaScriptContext context = new UglifyJavaScriptContext(
+                UglifyJavaScriptContext.compileEngine(log, optimizationLevel, "uglifyjs.js", "uglifyJavascript.js"))) {
+            for (int i = 0; i < rounds; i++) {
+                context.invokeUglifyJSFunctionOnFile(SCRIPTS, true);
+                timings.add(System.nanoTime() - start);
+                start = System.nanoTime();
+            }
+        }
+        return timings;
+    }
+
+    private static Timings cssCorpus(Log log, int optimizationLevel, int rounds) throws IOException {
+        Timings timings = new Timings();
+        long start = System.nanoTime();
+        try (CleanCSSJavaScriptContext context = new CleanCSSJavaScriptContext(CleanCSSJavaScriptContext
+                .compileEngine(log, optimizationLevel, "clean-css-v4.2.1.js", "minifyCSS.js"))) {
+            for (int i = 0; i < rounds; i++) {
+                context.invokeCleanCssFunctionOnFile(STYLES);
+                timings.add(System.nanoTime() - start);
+                start = System.nanoTime();
+            }
+        }
+        return timings;
+    }
+
+    private static Timings bundle(Log log, int optimizationLevel, String bundle) {
+        Timings timings = new Timings();
+        long start = System.nanoTime();
+        try (UglifyJavaScriptContext context = new UglifyJavaScriptContext(
+                UglifyJavaScriptContext.compileEngine(log, optimizationLevel, "uglifyjs.js", "uglifyJavascript.js"))) {
+            // a single run, including the engine start up, as the bundle takes minutes in the interpreter
+            context.invokeUglifyJSFunction(bundle, true);
+            timings.add(System.nanoTime() - start);
+        }
+        return timings;
+    }
+
+    private static Timings backend(Log log, MinifierProvider provider, int rounds) throws IOException {
+        File file = MinifierProvider.CSS.equals(provider.getType()) ? STYLES : SCRIPTS;
+        String code = FileUtils.readFileToString(file, "UTF-8");
+        Timings timings = new Timings();
+        long start = System.nanoTime();
+        try (Minifier minifier = provider.createMinifier(new MinifierOptions(), log)) {
+            for (int i = 0; i < rounds; i++) {
+                minifier.minify(file.getName(), code);
+                timings.add(System.nanoTime() - start);
+                start = System.nanoTime();
+            }
+        }
+        return timings;
+    }
+
+    /**
+     * Minifies the JavaScript corpus with the UglifyJS options of a preset.
+     *
+     * @return the timings and the size of the output
+     */
+    private static String preset(Log log, String name, int rounds) throws IOException {
+        JsOptions jsOptions = new JsOptions();
+        jsOptions.setPreset(name);
+        MinifierOptions options = new MinifierOptions();
+        options.setMangle(jsOptions.isMangle());
+        options.setJsOptions(jsOptions.toJson());
+        String code = FileUtils.readFileToString(SCRIPTS, "UTF-8");
+        int size = 0;
+        Timings timings = new Timings();
+        long start = System.nanoTime();
+        try (Minifier minifier = new UglifyJsMinifierProvider().createMinifier(options, log)) {
+            for (int i = 0; i < rounds; i++) {
+                size = minifier.minify(SCRIPTS.getName(), code).getCode().length();
+                timings.add(System.nanoTime() - start);
+                start = System.nanoTime();
+            }
+        }
+        return timings + ", " + size + " of " + code.length() + " characters";
+    }
+
+    /**
+     * Generates about 2MB of distinct JavaScript modules.
+     *
+     * @return the bundle source
+     */
+    private static String syntheticBundle() {
+        StringBuilder bundle = new StringBuilder(BUNDLE_SIZE + 1024);
+        for (int i = 0; bundle.length() < BUNDLE_SIZE; i++) {
+            bundle.append("function module").append(i).append("(items, factor) {\n")
+                    .append("    var total = 0;\n")
+                    .append("    for (var index = 0; index < items.length; index++) {\n")
+                    .append("        total += items[index] * factor + ").append(i).append(";\n")
+                    .append("    }\n")
+                    .append("    return { name: \"module").append(i).append("\", total: total };\n")
+                    .append("}\n");
+        }
+        return bundle.toString();
+    }
+
+    /**
+     * Time of the first file (including any engine start up) and mean time of the later files.
+     */
+    private static class Timings {
+        private long first = -1;
+        private long later;
+        private int laterCount;
+
+        void add(long nanos) {
+            if (first < 0) {
+                first = nanos;
+            } else {
+                later += nanos;
+                laterCount++;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format("first file %.1f ms, later files %.1f ms/file (%d files)",
+                    first / 1e6, laterCount == 0 ? 0 : later / 1e6 / laterCount, laterCount + 1);
+        }
+    }
+}
@@ -22,6 +22,105 @@ class TestConstants {
             "src/test/resources/unit/basic-test/test-plugin-config-do-not-skip-if-filename-contains-js.xml";
     static final String TEST_POM_LOCATION8 =
             "src/test/resources/unit/basic-test/basic-test-plugin-config-css.xml";
+    static final String TEST_POM_LOCATION9 =
+            "src/test/resources/unit/basic-test/test-plugin-config-threads.xml";
+    static final String TEST_POM_LOCATION10 =
+            "src/test/resources/unit/basic-test/test-plugin-config-cache.xml";
+    static final String TEST_POM_LOCATION11 =
+            "src/test/resources/unit/basic-test/test-plugin-config-manifest.xml";
+    static final String TEST_POM_LOCATION12 =
+            "src/test/resources/unit/basic-test/test-plugin-config-interpreter.xml";
+    static final String TEST_POM_LOCATION13 =
+            "src/test/resources/unit/basic-test/test-plugin-config-unknown-engine.xml";
+    static final String TEST_POM_LOCATION14 =
+            "src/test/resources/unit/basic-test/test-plugin-config-report.xml";
+    static final String TEST_POM_LOCATION15 =
+            "src/test/resources/unit/basic-test/test-plugin-config-bundles.xml";
+    static final String TEST_POM_LOCATION16 =
+            "src/test/resources/unit/basic-test/test-plugin-config-precompress.xml";
+    static final String TEST_POM_LOCATION17 =
+            "src/test/resources/unit/basic-test/test-plugin-config-sourcemaps.xml";
+    static final String TEST_POM_LOCATION18 =
+            "src/test/resources/unit/basic-test/test-plugin-config-watch.xml";
+    static final String TEST_POM_LOCATION19 =
+            "src/test/resources/unit/basic-test/test-plugin-config-daemon.xml";
+    static final String TEST_POM_LOCATION20 =
+            "src/test/resources/unit/basic-test/test-plugin-config-session-cache.xml";
+    static final String TEST_POM_LOCATION21 =
+            "src/test/resources/unit/basic-test/test-plugin-config-hashed.xml";
+    static final String TEST_POM_LOCATION22 =
+            "src/test/resources/unit/basic-test/test-plugin-config-dedupe.xml";
+    static final String TEST_POM_LOCATION23 =
+            "src/test/resources/unit/basic-test/test-plugin-config-minified.xml";
+    static final String TEST_POM_LOCATION24 =
+            "src/test/resources/unit/basic-test/test-plugin-config-timeout.xml";
+    static final String TEST_POM_LOCATION25 =
+            "src/test/resources/unit/basic-test/test-plugin-config-js-options.xml";
+    static final String TEST_POM_LOCATION26 =
+            "src/test/resources/unit/basic-test/test-plugin-config-batch.xml";
+    static final String TEST_POM_LOCATION27 =
+            "src/test/resources/unit/basic-test/test-plugin-config-errors.xml";
+    static final String TEST_POM_LOCATION28 =
+            "src/test/resources/unit/basic-test/test-plugin-config-outputs.xml";
+    static final String TEST_POM_LOCATION29 =
+            "src/test/resources/unit/basic-test/test-plugin-config-executions-js.xml";
+    static final String TEST_POM_LOCATION30 =
+            "src/test/resources/unit/basic-test/test-plugin-config-executions-css.xml";
+
+    // minification cache location
+    static final String CACHE_LOCATION =
+            "target/test-uglify-cache";
+    // build manifest location
+    static final String MANIFEST_LOCATION =
+            "target/test-uglify-manifest.properties";
+    // metrics report location
+    static final String REPORT_LOCATION =
+            "target/test-uglify-report";
+    // bundles output location
+    static final String BUNDLES_LOCATION =
+            "target/test-uglify-bundles";
+    // source maps output location
+    static final String SOURCE_MAPS_LOCATION =
+            "target/test-uglify-sourcemaps";
+
+    static final String LARGE_FILES_LOCATION =
+            "target/test-uglify-large";
+    // watched sources and outputs location
+    static final String WATCH_LOCATION =
+            "target/test-uglify-watch";
+    // outputs minified by the daemon location
+    static final String DAEMON_LOCATION =
+            "target/test-uglify-daemon";
+    // outputs minified by consecutive executions location
+    static final String SESSION_CACHE_LOCATION =
+            "target/test-uglify-session";
+    // outputs named after their hash location
+    static final String HASHED_LOCATION =
+            "target/test-uglify-hashed";
+    // identical sources and their outputs location
+    static final String DEDUPE_LOCATION =
+            "target/test-uglify-dedupe";
+    // already minified sources and their copies location
+    static final String ALREADY_MINIFIED_LOCATION =
+            "target/test-uglify-minified";
+    // sources stopped by the file timeout and their copies location
+    static final String TIMEOUT_LOCATION =
+            "target/test-uglify-timeout";
+    // sources minified with UglifyJS options location
+    static final String JS_OPTIONS_LOCATION =
+            "target/test-uglify-js-options";
+    // small sources minified in batches location
+    static final String BATCH_LOCATION =
+            "target/test-uglify-batch";
+    // sources and bundles that cannot be minified location
+    static final String ERRORS_LOCATION =
+            "target/test-uglify-errors";
+    // outputs written in place of the previous ones location
+    static final String OUTPUTS_LOCATION =
+            "target/test-uglify-outputs";
+    // sources of two executions sharing a build manifest location
+    static final String EXECUTIONS_LOCATION =
+            "target/test-uglify-executions";
 
     // minified files locations
     static final String MINIFIED_FILE_LOCATION =
@@ -48,5 +147,21 @@ class TestConstants {
             "src/test/resources/unit/basic-test/css/testcss.min.css";
     static final String MINIFIED_FILE_LOCATION12 =
             "src/test/resources/css/uglifyJavascriptTest.js";
+    static final String MINIFIED_FILE_LOCATION13 =
+            "src/test/resources/unit/basic-test/script/a.min.css";
+    static final String MINIFIED_FILE_LOCATION14 =
+            "src/test/resources/unit/basic-test/script/testManifestA.js";
+    static final String MINIFIED_FILE_LOCATION15 =
+            "src/test/resources/unit/basic-test/script/testManifestA.min.js";
+    static final String MINIFIED_FILE_LOCATION16 =
+            "src/test/resources/unit/basic-test/script/testManifestB.js";
+    static final String MINIFIED_FILE_LOCATION17 =
+            "src/test/resources/unit/basic-test/script/testManifestB.min.js";
+    static final String MINIFIED_FILE_LOCATION18 =
+            "src/test/resources/unit/basic-test/script/testPrecompress.min.js";
+    static final String MINIFIED_FILE_LOCATION19 =
+            "src/test/resources/unit/basic-test/script/testPrecompress.min.js.gz";
+    static final String MINIFIED_FILE_LOCATION20 =
+            "src/test/resources/unit/basic-test/script/uglifyJavascriptTest.min.js.gz";
 
 }
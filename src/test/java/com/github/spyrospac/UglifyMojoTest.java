@@ -1,10 +1,25 @@
 package com.github.spyrospac;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.testing.AbstractMojoTestCase;
 
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
 import java.nio.charset.Charset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
 
 import static com.github.spyrospac.TestConstants.*;
 
@@ -37,6 +52,60 @@ public class UglifyMojoTest extends AbstractMojoTestCase {
 
         deleteFileIfExists(MINIFIED_FILE_LOCATION11);
 
+        deleteFileIfExists(MINIFIED_FILE_LOCATION13);
+
+        deleteFileIfExists(MINIFIED_FILE_LOCATION14);
+
+        deleteFileIfExists(MINIFIED_FILE_LOCATION15);
+
+        deleteFileIfExists(MINIFIED_FILE_LOCATION16);
+
+        deleteFileIfExists(MINIFIED_FILE_LOCATION17);
+
+        deleteFileIfExists(MINIFIED_FILE_LOCATION18);
+
+        deleteFileIfExists(MINIFIED_FILE_LOCATION19);
+
+        deleteFileIfExists(MINIFIED_FILE_LOCATION20);
+
+        deleteFileIfExists(MANIFEST_LOCATION);
+
+        FileUtils.deleteDirectory(new File(getBasedir(), CACHE_LOCATION));
+
+        FileUtils.deleteDirectory(new File(getBasedir(), REPORT_LOCATION));
+
+        FileUtils.deleteDirectory(new File(getBasedir(), BUNDLES_LOCATION));
+
+        FileUtils.deleteDirectory(new File(getBasedir(), SOURCE_MAPS_LOCATION));
+
+        FileUtils.deleteDirectory(new File(getBasedir(), LARGE_FILES_LOCATION));
+
+        FileUtils.deleteDirectory(new File(getBasedir(), WATCH_LOCATION));
+
+        FileUtils.deleteDirectory(new File(getBasedir(), DAEMON_LOCATION));
+
+        FileUtils.deleteDirectory(new File(getBasedir(), SESSION_CACHE_LOCATION));
+
+        FileUtils.deleteDirectory(new File(getBasedir(), HASHED_LOCATION));
+
+        FileUtils.deleteDirectory(new File(getBasedir(), DEDUPE_LOCATION));
+
+        FileUtils.deleteDirectory(new File(getBasedir(), ALREADY_MINIFIED_LOCATION));
+
+        FileUtils.deleteDirectory(new File(getBasedir(), TIMEOUT_LOCATION));
+
+        FileUtils.deleteDirectory(new File(getBasedir(), JS_OPTIONS_LOCATION));
+
+        FileUtils.deleteDirectory(new File(getBasedir(), BATCH_LOCATION));
+
+        FileUtils.deleteDirectory(new File(getBasedir(), ERRORS_LOCATION));
+
+        FileUtils.deleteDirectory(new File(getBasedir(), OUTPUTS_LOCATION));
+
+        FileUtils.deleteDirectory(new File(getBasedir(), EXECUTIONS_LOCATION));
+
+        PluginSession.getOutputs(0).clear();
+
         super.tearDown();
 
     }
@@ -344,11 +413,1117 @@ public class UglifyMojoTest extends AbstractMojoTestCase {
         assertEquals("uglifyJavascript=function(i){return UglifyJS.minify(i).code};", minifiedString);
     }
 
+    /**
+     * Tests that JavaScript and CSS files minified by several threads give the same output as one thread.
+     *
+     * @throws Exception
+     */
+    public void testParallelMinify() throws Exception {
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION9);
+
+        UglifyMojo mojo = new UglifyMojo();
+        mojo = (UglifyMojo) configureMojo(
+                mojo, extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test Parallel Minify");
+
+        mojo.execute();
+
+        File minifiedFile = new File(getBasedir(), MINIFIED_FILE_LOCATION2);
+        assertTrue(minifiedFile.exists());
+        assertEquals("uglifyJavascript=function(i){return UglifyJS.minify(i).code};",
+                FileUtils.readFileToString(minifiedFile, Charset.defaultCharset()));
+
+        minifiedFile = new File(getBasedir(), MINIFIED_FILE_LOCATION10);
+        assertTrue(minifiedFile.exists());
+        assertEquals("uglifyJavascript=function(i){return UglifyJS.minify(i).code};",
+                FileUtils.readFileToString(minifiedFile, Charset.defaultCharset()));
+
+        minifiedFile = new File(getBasedir(), MINIFIED_FILE_LOCATION13);
+        assertTrue(minifiedFile.exists());
+        assertEquals(".a{max-width:10px}", FileUtils.readFileToString(minifiedFile, Charset.defaultCharset()));
+    }
+
+    /**
+     * Tests that an unchanged file is copied from the minification cache instead of being minified again.
+     * The cache entry is altered on purpose, to tell a cached output from a minified one.
+     *
+     * @throws Exception
+     */
+    public void testMinifyFromCache() throws Exception {
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION10);
+
+        UglifyMojo mojo = new UglifyMojo();
+        mojo = (UglifyMojo) configureMojo(
+                mojo, extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test Minify From Cache");
+        // the outputs kept in memory would be found before the altered entry
+        setVariableValueToObject(mojo, "sessionCacheMaxSize", 0L);
+
+        mojo.execute();
+
+        File minifiedFile = new File(getBasedir(), MINIFIED_FILE_LOCATION2);
+        assertTrue(minifiedFile.exists());
+
+        Collection<File> entries = FileUtils.listFiles(new File(getBasedir(), CACHE_LOCATION), null, true);
+        assertEquals(1, entries.size());
+        File entry = entries.iterator().next();
+        assertEquals("uglifyJavascript=function(i){return UglifyJS.minify(i).code};",
+                FileUtils.readFileToString(entry, Charset.defaultCharset()));
+
+        FileUtils.write(entry, "cached();", Charset.defaultCharset());
+        deleteFileIfExists(MINIFIED_FILE_LOCATION2);
+
+        mojo.execute();
+
+        assertTrue(minifiedFile.exists());
+        assertEquals("cached();", FileUtils.readFileToString(minifiedFile, Charset.defaultCharset()));
+    }
+
+    /**
+     * Tests that with a build manifest unchanged files are not minified again,
+     * and that the minified file of a deleted source is removed.
+     *
+     * @throws Exception
+     */
+    public void testMinifyWithBuildManifest() throws Exception {
+        String txt = "uglifyJavascript = function (code) {\n" +
+                "\n" +
+                "var result =  UglifyJS.minify(code);\n" +
+                "  return result.code;\n" +
+                "};\n";
+        FileUtils.write(new File(getBasedir(), MINIFIED_FILE_LOCATION14), txt, Charset.defaultCharset());
+        FileUtils.write(new File(getBasedir(), MINIFIED_FILE_LOCATION16), txt, Charset.defaultCharset());
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION11);
+
+        UglifyMojo mojo = new UglifyMojo();
+        mojo = (UglifyMojo) configureMojo(
+                mojo, extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test Minify With Build Manifest");
+
+        // an option containing the separator of the manifest entries
+        ((JsOptions) getVariableValueFromObject(mojo, "jsOptions")).setPureFuncs(Collections.singletonList("a|b"));
+        mojo.execute();
+
+        File minifiedFile = new File(getBasedir(), MINIFIED_FILE_LOCATION15);
+        File minifiedFile2 = new File(getBasedir(), MINIFIED_FILE_LOCATION17);
+        assertTrue(minifiedFile.exists());
+        assertTrue(minifiedFile2.exists());
+        assertTrue(new File(getBasedir(), MANIFEST_LOCATION).exists());
+
+        // an unchanged file is not minified again
+        FileUtils.write(minifiedFile, "unchanged();", Charset.defaultCharset());
+        long lastModified = minifiedFile.lastModified();
+
+        // the minified file of a deleted source is removed
+        deleteFileIfExists(MINIFIED_FILE_LOCATION16);
+
+        mojo.execute();
+
+        assertEquals(lastModified, minifiedFile.lastModified());
+        assertEquals("unchanged();", FileUtils.readFileToString(minifiedFile, Charset.defaultCharset()));
+        assertFalse(minifiedFile2.exists());
+
+        // turning precompression on compresses the unchanged file without minifying it again
+        setVariableValueToObject(mojo, "precompress", "gzip");
+        setVariableValueToObject(mojo, "precompressMinGain", -1000);
+        mojo.execute();
+
+        File compressedFile = new File(minifiedFile.getPath() + ".gz");
+        assertEquals(lastModified, minifiedFile.lastModified());
+        try (InputStream in = new GZIPInputStream(new FileInputStream(compressedFile))) {
+            assertEquals("unchanged();", IOUtils.toString(in, Charset.defaultCharset()));
+        }
+
+        // and turning it off deletes the compressed copy
+        setVariableValueToObject(mojo, "precompress", null);
+        mojo.execute();
+
+        assertEquals(lastModified, minifiedFile.lastModified());
+        assertFalse(compressedFile.exists());
+    }
+
+    /**
+     * Tests that two executions sharing a build manifest do not delete or minify again the outputs of each other.
+     *
+     * @throws Exception
+     */
+    public void testBuildManifestOfTwoExecutions() throws Exception {
+
+        File directory = new File(getBasedir(), EXECUTIONS_LOCATION + "/src");
+        FileUtils.write(new File(directory, "app.js"), "function app(first) {\n    return first + 1;\n}\n",
+                Charset.defaultCharset());
+        FileUtils.write(new File(directory, "app.css"), ".app {\n    color: #ff0000;\n}\n",
+                Charset.defaultCharset());
+
+        UglifyMojo jsMojo = (UglifyMojo) configureMojo(new UglifyMojo(), extractPluginConfiguration(ARTIFACT_ID,
+                new File(getBasedir(), TEST_POM_LOCATION29)));
+        UglifyMojo cssMojo = (UglifyMojo) configureMojo(new UglifyMojo(), extractPluginConfiguration(ARTIFACT_ID,
+                new File(getBasedir(), TEST_POM_LOCATION30)));
+
+        jsMojo.getLog().info("-- Test Build Manifest Of Two Executions");
+
+        jsMojo.execute();
+        cssMojo.execute();
+
+        File jsOutput = new File(getBasedir(), EXECUTIONS_LOCATION + "/out/app.min.js");
+        File cssOutput = new File(getBasedir(), EXECUTIONS_LOCATION + "/out/app.min.css");
+        assertTrue(jsOutput.exists());
+        assertTrue(cssOutput.exists());
+
+        // unchanged outputs are neither deleted as orphans nor minified again by the other execution
+        FileUtils.write(jsOutput, "unchanged();", Charset.defaultCharset());
+        FileUtils.write(cssOutput, ".unchanged{}", Charset.defaultCharset());
+        jsMojo.execute();
+        cssMojo.execute();
+        jsMojo.execute();
+
+        assertEquals("unchanged();", FileUtils.readFileToString(jsOutput, Charset.defaultCharset()));
+        assertEquals(".unchanged{}", FileUtils.readFileToString(cssOutput, Charset.defaultCharset()));
+    }
+
+    /**
+     * Tests minification with the minifier running in the interpreter instead of compiled to bytecode.
+     *
+     * @throws Exception
+     */
+    public void testMinifyInInterpreter() throws Exception {
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION12);
+
+        UglifyMojo mojo = new UglifyMojo();
+        mojo = (UglifyMojo) configureMojo(
+                mojo, extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test Minify In Interpreter");
+
+        mojo.execute();
+
+        File minifiedFile = new File(getBasedir(), MINIFIED_FILE_LOCATION2);
+        assertTrue(minifiedFile.exists());
+
+        String minifiedString = FileUtils.readFileToString(minifiedFile, Charset.defaultCharset());
+        assertEquals("uglifyJavascript=function(i){return UglifyJS.minify(i).code};", minifiedString);
+    }
+
+    /**
+     * Tests that an unknown minifier backend fails the build without minifying.
+     *
+     * @throws Exception
+     */
+    public void testUnknownMinifierEngine() throws Exception {
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION13);
+
+        UglifyMojo mojo = new UglifyMojo();
+        mojo = (UglifyMojo) configureMojo(
+                mojo, extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test Unknown Minifier Engine");
+
+        try {
+            mojo.execute();
+            fail("An unknown minifier should fail the build");
+        } catch (MojoExecutionException e) {
+            assertTrue(e.getMessage().contains("unknown-engine"));
+        }
+
+        assertFalse(new File(getBasedir(), MINIFIED_FILE_LOCATION2).exists());
+    }
+
+    /**
+     * Tests that the metrics of the run are written as JSON and CSV, with an entry per minified file.
+     *
+     * @throws Exception
+     */
+    public void testMinifyReport() throws Exception {
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION14);
+
+        UglifyMojo mojo = new UglifyMojo();
+        mojo = (UglifyMojo) configureMojo(
+                mojo, extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test Minify Report");
+
+        mojo.execute();
+
+        File json = new File(getBasedir(), REPORT_LOCATION + "/uglify-report.json");
+        assertTrue(json.exists());
+        String report = FileUtils.readFileToString(json, Charset.defaultCharset());
+        assertTrue(report.startsWith("{\"elapsedMillis\":"));
+        assertTrue(report.contains("\"minified\":2,"));
+        assertTrue(report.contains("{\"path\":\"uglifyJavascriptTest.js\",\"type\":\"js\","));
+        assertTrue(report.contains("{\"path\":\"a.css\",\"type\":\"css\",\"inputBytes\":"));
+
+        File csv = new File(getBasedir(), REPORT_LOCATION + "/uglify-report.csv");
+        assertTrue(csv.exists());
+        List<String> lines = FileUtils.readLines(csv, Charset.defaultCharset());
+        assertEquals(3, lines.size());
+        assertEquals("path,type,inputBytes,outputBytes,ratio,cached,deduplicated,alreadyMinified,timedOut,failed,allocatedBytes,"
+                + "totalMillis,"
+                + "engineInitMillis,readMillis,minifyMillis,writeMillis,compressMillis", lines.get(0));
+        assertTrue(lines.get(1).startsWith("uglifyJavascriptTest.js,js,")
+                || lines.get(2).startsWith("uglifyJavascriptTest.js,js,"));
+        assertTrue(lines.get(1).startsWith("a.css,css,27,18,") || lines.get(2).startsWith("a.css,css,27,18,"));
+    }
+
+    /**
+     * Tests that the sources of a bundle are minified together into a single file, in the order of the includes.
+     *
+     * @throws Exception
+     */
+    public void testMinifyBundles() throws Exception {
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION15);
+
+        UglifyMojo mojo = new UglifyMojo();
+        mojo = (UglifyMojo) configureMojo(
+                mojo, extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test Minify Bundles");
+
+        mojo.execute();
+
+        File bundle = new File(getBasedir(), BUNDLES_LOCATION + "/app.min.js");
+        assertTrue(bundle.exists());
+        assertEquals("var result=helper(21);function helper(e){return 2*e}",
+                FileUtils.readFileToString(bundle, Charset.defaultCharset()));
+
+        bundle = new File(getBasedir(), BUNDLES_LOCATION + "/styles/app.min.css");
+        assertTrue(bundle.exists());
+        assertEquals(".b{color:red}.a{max-width:10px}", FileUtils.readFileToString(bundle, Charset.defaultCharset()));
+    }
+
+    /**
+     * Tests that a gzip copy is written next to a minified file, unless it does not save enough bytes.
+     *
+     * @throws Exception
+     */
+    public void testPrecompress() throws Exception {
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION16);
+
+        UglifyMojo mojo = new UglifyMojo();
+        mojo = (UglifyMojo) configureMojo(
+                mojo, extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test Precompress");
+
+        mojo.execute();
+
+        File minifiedFile = new File(getBasedir(), MINIFIED_FILE_LOCATION18);
+        File compressedFile = new File(getBasedir(), MINIFIED_FILE_LOCATION19);
+        assertTrue(minifiedFile.exists());
+        assertTrue(compressedFile.exists());
+        assertTrue(compressedFile.length() < minifiedFile.length());
+        try (InputStream in = new GZIPInputStream(new FileInputStream(compressedFile))) {
+            assertEquals(FileUtils.readFileToString(minifiedFile, Charset.defaultCharset()),
+                    IOUtils.toString(in, Charset.defaultCharset()));
+        }
+
+        // the gzip copy of a tiny file is larger than the file itself
+        assertTrue(new File(getBasedir(), MINIFIED_FILE_LOCATION2).exists());
+        assertFalse(new File(getBasedir(), MINIFIED_FILE_LOCATION20).exists());
+
+        // a compression level out of range fails the run before any file is minified
+        setVariableValueToObject(mojo, "gzipLevel", 10);
+        try {
+            mojo.execute();
+            fail("a gzipLevel of 10 should be rejected");
+        } catch (MojoExecutionException e) {
+            assertEquals("Invalid gzipLevel 10, use 0 to 9.", e.getMessage());
+        }
+        setVariableValueToObject(mojo, "gzipLevel", 9);
+        setVariableValueToObject(mojo, "brotliQuality", -1);
+        try {
+            mojo.execute();
+            fail("a brotliQuality of -1 should be rejected");
+        } catch (MojoExecutionException e) {
+            assertEquals("Invalid brotliQuality -1, use 0 to 11.", e.getMessage());
+        }
+    }
+
+    /**
+     * Tests that source maps are written next to the minified files and linked from them,
+     * and that the map of a transpiled source is chained to its original source.
+     *
+     * @throws Exception
+     */
+    public void testSourceMaps() throws Exception {
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION17);
+
+        UglifyMojo mojo = new UglifyMojo();
+        mojo = (UglifyMojo) configureMojo(
+                mojo, extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test Source Maps");
+
+        mojo.execute();
+
+        String sources = "../../src/test/resources/unit/basic-test/script/";
+        File minifiedFile = new File(getBasedir(), SOURCE_MAPS_LOCATION + "/uglifyJavascriptTest.min.js");
+        assertEquals("uglifyJavascript=function(i){return UglifyJS.minify(i).code};"
+                        + "\n//# sourceMappingURL=uglifyJavascriptTest.min.js.map",
+                FileUtils.readFileToString(minifiedFile, Charset.defaultCharset()));
+        String sourceMap = FileUtils.readFileToString(new File(getBasedir(),
+                SOURCE_MAPS_LOCATION + "/uglifyJavascriptTest.min.js.map"), Charset.defaultCharset());
+        assertTrue(sourceMap.contains("\"sources\":[\"" + sources + "uglifyJavascriptTest.js\"]"));
+        assertTrue(sourceMap.contains("\"mappings\":\"AAAAA"));
+
+        minifiedFile = new File(getBasedir(), SOURCE_MAPS_LOCATION + "/a.min.css");
+        assertEquals(".a{max-width:10px}\n/*# sourceMappingURL=a.min.css.map */",
+                FileUtils.readFileToString(minifiedFile, Charset.defaultCharset()));
+        sourceMap = FileUtils.readFileToString(new File(getBasedir(), SOURCE_MAPS_LOCATION + "/a.min.css.map"),
+                Charset.defaultCharset());
+        assertTrue(sourceMap.contains("\"sources\":[\"" + sources + "a.css\"]"));
+
+        // chained to the map of the transpiler
+        sourceMap = FileUtils.readFileToString(new File(getBasedir(),
+                SOURCE_MAPS_LOCATION + "/testSourceMap.min.js.map"), Charset.defaultCharset());
+        assertTrue(sourceMap.contains("\"sources\":[\"" + sources + "testSourceMap.ts\"]"));
+    }
+
+    /**
+     * tests that large files are read and written through the streaming I/O with a bounded heap
+     *
+     * @throws Exception
+     */
+    public void testLargeFiles() throws Exception {
+
+        File directory = new File(getBasedir(), LARGE_FILES_LOCATION);
+        FileUtils.forceMkdir(directory);
+
+        // 4MB of JavaScript with multi-byte and surrogate pair characters across the chunks
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; builder.length() < 4 * 1024 * 1024; i++) {
+            builder.append("var value").append(i).append(" = \"caf\u00e9 \u20ac \ud83d\ude00\";\n");
+        }
+        String code = builder.toString();
+        byte[] bytes = code.getBytes("UTF-8");
+        File source = new File(directory, "large.js");
+        FileUtils.writeByteArrayToFile(source, bytes);
+
+        long allocated = MinificationReport.threadAllocatedBytes();
+        TextFiles.Source read = TextFiles.read(source);
+        long readAllocated = MinificationReport.threadAllocatedBytes() - allocated;
+
+        assertEquals(code, read.getCode());
+        assertEquals(ContentHash.sha256(bytes), read.getHash());
+        assertEquals(bytes.length, read.getLength());
+
+        File output = new File(directory, "large.min.js");
+        FileUtils.write(output, "stale", Charset.defaultCharset());
+        allocated = MinificationReport.threadAllocatedBytes();
+        long written = TextFiles.write(output, false, read.getCode(), "\n//# sourceMappingURL=large.min.js.map");
+        long writeAllocated = MinificationReport.threadAllocatedBytes() - allocated;
+
+        String comment = "\n//# sourceMappingURL=large.min.js.map";
+        assertEquals(bytes.length + comment.length(), written);
+        assertEquals(code + comment, FileUtils.readFileToString(output, "UTF-8"));
+        // the large output was renamed over the stale one, without leaving its temporary file
+        assertEquals(2, directory.list().length);
+
+        if (allocated >= 0) {
+            // the builder the text is decoded into, widened for the non latin-1 characters, and the text itself,
+            // the bytes being memory mapped
+            assertTrue("read allocated " + readAllocated, readAllocated < 6L * bytes.length);
+            // fixed size buffers, whatever the size of the output
+            assertTrue("write allocated " + writeAllocated, writeAllocated < 1024 * 1024);
+        }
+    }
+
+    /**
+     * tests that the watch goal minifies the changed, added and deleted sources
+     *
+     * @throws Exception
+     */
+    public void testWatch() throws Exception {
+
+        File sourceDir = new File(getBasedir(), WATCH_LOCATION + "/src");
+        File outputDir = new File(getBasedir(), WATCH_LOCATION + "/out");
+        FileUtils.write(new File(sourceDir, "watched.js"), "function first(value) { return value; }",
+                Charset.defaultCharset());
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION18);
+
+        final WatchMojo mojo = (WatchMojo) configureMojo(
+                new WatchMojo(), extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test Watch");
+
+        final Exception[] failure = new Exception[1];
+        Thread watch = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mojo.execute();
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        watch.start();
+        try {
+            File minifiedFile = new File(outputDir, "watched.min.js");
+            awaitContent(minifiedFile, "function first(n){return n}");
+            assertTrue(mojo.awaitWatching(10, TimeUnit.SECONDS));
+
+            // a file that cannot be minified fails the run, but does not stop the watch
+            FileUtils.write(new File(sourceDir, "broken.js"), "function broken(value) { return value;",
+                    Charset.defaultCharset());
+            FileUtils.write(new File(sourceDir, "watched.js"), "function second(value) { return value; }",
+                    Charset.defaultCharset());
+            awaitContent(minifiedFile, "function second(n){return n}");
+            assertTrue(new File(sourceDir, "broken.js").delete());
+
+            FileUtils.write(new File(sourceDir, "nested/added.css"), ".added { color: #ff0000; }",
+                    Charset.defaultCharset());
+            awaitContent(new File(outputDir, "nested/added.min.css"), ".added{color:red}");
+
+            assertTrue(new File(sourceDir, "watched.js").delete());
+            awaitContent(minifiedFile, null);
+        } finally {
+            watch.interrupt();
+            watch.join(10000);
+        }
+        assertFalse(watch.isAlive());
+        assertNull(failure[0]);
+    }
+
+    /**
+     * tests minification in the minification daemon, and in process when the daemon is stopped
+     *
+     * @throws Exception
+     */
+    public void testDaemon() throws Exception {
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION19);
+
+        UglifyMojo mojo = new UglifyMojo();
+        mojo = (UglifyMojo) configureMojo(
+                mojo, extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test Daemon");
+
+        final MinifierDaemon daemon = new MinifierDaemon(0, 2, mojo.getLog());
+        Thread server = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    daemon.serve();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        server.start();
+        File minifiedFile = new File(getBasedir(), DAEMON_LOCATION + "/uglifyJavascriptTest.min.js");
+        File minifiedCss = new File(getBasedir(), DAEMON_LOCATION + "/a.min.css");
+        try {
+            // a string length out of bounds closes the connection, without allocating it
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemon.getPort())) {
+                socket.setSoTimeout(10000);
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeInt(MinifierDaemon.MAGIC);
+                out.writeInt(Integer.MAX_VALUE);
+                out.flush();
+                assertEquals(-1, socket.getInputStream().read());
+            }
+
+            // the error of a source keeps the position the minifier reported in the daemon
+            MinifierProvider remote = new DaemonClient(daemon.getPort(), 0, mojo.getLog()).wrap(PluginSession
+                    .getProviders().get(MinifierProvider.JAVASCRIPT + ":" + UglifyJsMinifierProvider.NAME));
+            Minifier minifier = remote.createMinifier(new MinifierOptions(), mojo.getLog());
+            try {
+                minifier.minify("broken.js", "function broken(value) { return value;");
+                fail();
+            } catch (MinificationException e) {
+                assertEquals(1, e.getLine());
+                assertEquals(38, e.getColumn());
+            }
+
+            // the daemon stops a source after the file timeout of its client
+            StringBuilder slow = new StringBuilder();
+            for (int i = 0; slow.length() < 200000; i++) {
+                slow.append("function f").append(i).append("(value) {\n    return value + ").append(i).append(";\n}\n");
+            }
+            Minifier timed = new DaemonClient(daemon.getPort(), 1, mojo.getLog()).wrap(PluginSession.getProviders()
+                    .get(MinifierProvider.JAVASCRIPT + ":" + UglifyJsMinifierProvider.NAME))
+                    .createMinifier(new MinifierOptions(), mojo.getLog());
+            try {
+                timed.minify("slow.js", slow.toString());
+                fail();
+            } catch (Watchdog.Timeout e) {
+                assertTrue(e.getMessage().contains("slow.js"));
+            } finally {
+                timed.close();
+            }
+
+            // a client beyond the threads of the daemon is refused at once and minifies in process
+            Minifier second = remote.createMinifier(new MinifierOptions(), mojo.getLog());
+            Minifier refused = remote.createMinifier(new MinifierOptions(), mojo.getLog());
+            try {
+                assertEquals("var a=1;", refused.minify("refused.js", "var a = 1;").getCode());
+                assertEquals(0, daemon.getFiles());
+            } finally {
+                refused.close();
+                second.close();
+                minifier.close();
+            }
+
+            setVariableValueToObject(mojo, "daemonPort", daemon.getPort());
+            setVariableValueToObject(mojo, "sessionCacheMaxSize", 0L);
+            mojo.execute();
+        } finally {
+            daemon.close();
+            server.join(10000);
+        }
+
+        assertEquals(2, daemon.getFiles());
+        assertEquals("uglifyJavascript=function(i){return UglifyJS.minify(i).code};",
+                FileUtils.readFileToString(minifiedFile, Charset.defaultCharset()));
+        assertEquals(".a{max-width:10px}", FileUtils.readFileToString(minifiedCss, Charset.defaultCharset()));
+
+        // no daemon is listening any more, the files are minified in process
+        assertTrue(minifiedFile.delete());
+        assertTrue(minifiedCss.delete());
+        mojo.execute();
+
+        assertEquals(2, daemon.getFiles());
+        assertEquals("uglifyJavascript=function(i){return UglifyJS.minify(i).code};",
+                FileUtils.readFileToString(minifiedFile, Charset.defaultCharset()));
+        assertEquals(".a{max-width:10px}", FileUtils.readFileToString(minifiedCss, Charset.defaultCharset()));
+    }
+
+    /**
+     * Tests that an execution minifies from the outputs kept in memory by a previous execution of the session.
+     *
+     * @throws Exception
+     */
+    public void testSessionCache() throws Exception {
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION20);
+
+        UglifyMojo mojo = new UglifyMojo();
+        mojo = (UglifyMojo) configureMojo(
+                mojo, extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test Session Cache");
+
+        mojo.execute();
+
+        File json = new File(getBasedir(), SESSION_CACHE_LOCATION + "/report/uglify-report.json");
+        assertTrue(FileUtils.readFileToString(json, Charset.defaultCharset()).contains("\"cached\":0,"));
+        File minifiedFile = new File(getBasedir(), SESSION_CACHE_LOCATION + "/uglifyJavascriptTest.min.js");
+        File minifiedCss = new File(getBasedir(), SESSION_CACHE_LOCATION + "/a.min.css");
+        assertTrue(minifiedFile.delete());
+        assertTrue(minifiedCss.delete());
+
+        // another execution, e.g. of the next module, finds both outputs in memory
+        mojo = (UglifyMojo) configureMojo(
+                new UglifyMojo(), extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+        mojo.execute();
+
+        assertTrue(FileUtils.readFileToString(json, Charset.defaultCharset()).contains("\"cached\":2,"));
+        assertEquals("uglifyJavascript=function(i){return UglifyJS.minify(i).code};",
+                FileUtils.readFileToString(minifiedFile, Charset.defaultCharset()));
+        assertEquals(".a{max-width:10px}", FileUtils.readFileToString(minifiedCss, Charset.defaultCharset()));
+    }
+
+    /**
+     * Tests that the outputs are named after the hash of their content, mapped in the asset manifest,
+     * and that the hashed file of the previous content is deleted.
+     *
+     * @throws Exception
+     */
+    public void testHashOutputNames() throws Exception {
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION21);
+
+        UglifyMojo mojo = new UglifyMojo();
+        mojo = (UglifyMojo) configureMojo(
+                mojo, extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test Hash Output Names");
+
+        mojo.execute();
+
+        String minified = "uglifyJavascript=function(i){return UglifyJS.minify(i).code};";
+        String hash = ContentHash.sha256(minified.getBytes(Charset.defaultCharset())).substring(0, 8);
+        File minifiedFile = new File(getBasedir(), HASHED_LOCATION + "/uglifyJavascriptTest." + hash + ".min.js");
+        assertEquals(minified, FileUtils.readFileToString(minifiedFile, Charset.defaultCharset()));
+        assertFalse(new File(getBasedir(), HASHED_LOCATION + "/uglifyJavascriptTest.min.js").exists());
+        // the watch ignores the changes of the files the run wrote, under their hashed names
+        assertTrue(mojo.getWrittenFiles().contains(minifiedFile));
+        String cssHash = ContentHash.sha256(".a{max-width:10px}".getBytes(Charset.defaultCharset())).substring(0, 8);
+        File assets = new File(getBasedir(), HASHED_LOCATION + "/assets.json");
+        String expected = "{\"a.min.css\":\"a." + cssHash + ".min.css\","
+                + "\"uglifyJavascriptTest.min.js\":\"uglifyJavascriptTest." + hash + ".min.js\"}";
+        assertEquals(expected, FileUtils.readFileToString(assets, Charset.defaultCharset()));
+
+        // unchanged files keep their hashed names and their modification times, and the names of the manifest
+        // are read back as they were written
+        long lastModified = minifiedFile.lastModified() - 10000;
+        assertTrue(minifiedFile.setLastModified(lastModified));
+        String escaped = "\"line\\u000abreak.min.js\":\"line\\u000abreak.01234567.min.js\",";
+        FileUtils.write(assets, "{\"line\\nbreak.min.js\":\"line\\nbreak.01234567.min.js\","
+                + expected.substring(1), Charset.defaultCharset());
+        mojo.execute();
+
+        assertTrue(minifiedFile.exists());
+        assertEquals(lastModified, minifiedFile.lastModified());
+        assertEquals("{\"a.min.css\":\"a." + cssHash + ".min.css\"," + escaped
+                + expected.substring(expected.indexOf("\"uglifyJavascriptTest.min.js")),
+                FileUtils.readFileToString(assets, Charset.defaultCharset()));
+
+        // a new content gets a new name and the previous file is deleted
+        setVariableValueToObject(mojo, "mangle", false);
+        mojo.execute();
+
+        assertFalse(minifiedFile.exists());
+        minified = "uglifyJavascript=function(code){return UglifyJS.minify(code).code};";
+        String newHash = ContentHash.sha256(minified.getBytes(Charset.defaultCharset())).substring(0, 8);
+        File newMinifiedFile = new File(getBasedir(), HASHED_LOCATION + "/uglifyJavascriptTest." + newHash + ".min.js");
+        assertEquals(minified, FileUtils.readFileToString(newMinifiedFile, Charset.defaultCharset()));
+        assertTrue(FileUtils.readFileToString(assets, Charset.defaultCharset())
+                .contains("\"uglifyJavascriptTest.min.js\":\"uglifyJavascriptTest." + newHash + ".min.js\""));
+
+        // a file outside of the root is recorded with its absolute path, and its previous hashed file is deleted
+        File root = new File(getBasedir(), HASHED_LOCATION + "/root");
+        AssetManifest manifest = AssetManifest.load(new File(root, "assets.json"), root, mojo.getLog());
+        File outside = new File(getBasedir(), HASHED_LOCATION + "/bundle.min.js");
+        FileUtils.write(outside, "a();", Charset.defaultCharset());
+        File first = manifest.publish(outside);
+        FileUtils.write(outside, "b();", Charset.defaultCharset());
+        File second = manifest.publish(outside);
+        assertFalse(first.exists());
+        assertTrue(second.exists());
+        assertEquals(second, manifest.get(outside));
+    }
+
+    /**
+     * Tests that identical sources are minified once, the output being copied to the others.
+     *
+     * @throws Exception
+     */
+    public void testDeduplicateIdenticalSources() throws Exception {
+
+        File directory = new File(getBasedir(), DEDUPE_LOCATION + "/src");
+        File source = new File(getBasedir(), "src/test/resources/unit/basic-test/script/uglifyJavascriptTest.js");
+        for (String vendor : new String[]{"a", "b", "c"}) {
+            FileUtils.copyFile(source, new File(directory, vendor + "/uglifyJavascriptTest.js"));
+        }
+        FileUtils.write(new File(directory, "d/other.js"), "var other = 1;", Charset.defaultCharset());
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION22);
+
+        UglifyMojo mojo = new UglifyMojo();
+        mojo = (UglifyMojo) configureMojo(
+                mojo, extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test Deduplicate Identical Sources");
+
+        setVariableValueToObject(mojo, "sessionCacheMaxSize", 0L);
+        mojo.execute();
+
+        for (String vendor : new String[]{"a", "b", "c"}) {
+            assertEquals("uglifyJavascript=function(i){return UglifyJS.minify(i).code};",
+                    FileUtils.readFileToString(new File(getBasedir(),
+                            DEDUPE_LOCATION + "/out/" + vendor + "/uglifyJavascriptTest.min.js"), Charset.defaultCharset()));
+        }
+        assertEquals("var other=1;", FileUtils.readFileToString(
+                new File(getBasedir(), DEDUPE_LOCATION + "/out/d/other.min.js"), Charset.defaultCharset()));
+        File json = new File(getBasedir(), DEDUPE_LOCATION + "/report/uglify-report.json");
+        assertTrue(FileUtils.readFileToString(json, Charset.defaultCharset()).contains("\"deduplicated\":2,"));
+
+        // the source map of every output names its own source
+        setVariableValueToObject(mojo, "sourceMaps", true);
+        mojo.execute();
+
+        for (String vendor : new String[]{"a", "b", "c"}) {
+            assertTrue(FileUtils.readFileToString(new File(getBasedir(), DEDUPE_LOCATION + "/out/" + vendor
+                    + "/uglifyJavascriptTest.min.js.map"), Charset.defaultCharset())
+                    .contains("src/" + vendor + "/uglifyJavascriptTest.js"));
+        }
+        assertTrue(FileUtils.readFileToString(json, Charset.defaultCharset()).contains("\"deduplicated\":0,"));
+    }
+
+    /**
+     * Tests that a source that is minified already is copied as it is, while a readable source of the same
+     * length is minified.
+     *
+     * @throws Exception
+     */
+    public void testCopyAlreadyMinified() throws Exception {
+
+        StringBuilder minified = new StringBuilder("/*! vendor v1.0 */\n");
+        StringBuilder readable = new StringBuilder();
+        for (int i = 0; minified.length() < 4 * MinifiedCode.MIN_LENGTH; i++) {
+            minified.append("var a").append(i).append("=").append(i).append(";");
+            readable.append("var a").append(i).append(" = ").append(i).append(";\n");
+        }
+        assertTrue(MinifiedCode.isMinified(minified.toString()));
+        assertFalse(MinifiedCode.isMinified(readable.toString()));
+
+        File directory = new File(getBasedir(), ALREADY_MINIFIED_LOCATION + "/src");
+        FileUtils.write(new File(directory, "vendor-bundle.js"), minified, Charset.defaultCharset());
+        FileUtils.write(new File(directory, "app.js"), readable, Charset.defaultCharset());
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION23);
+
+        UglifyMojo mojo = new UglifyMojo();
+        mojo = (UglifyMojo) configureMojo(
+                mojo, extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test Copy Already Minified");
+
+        mojo.execute();
+
+        // UglifyJS would have joined the declarations
+        File copy = new File(getBasedir(), ALREADY_MINIFIED_LOCATION + "/out/vendor-bundle.min.js");
+        assertEquals(minified.toString(), FileUtils.readFileToString(copy, Charset.defaultCharset()));
+        assertTrue(FileUtils.readFileToString(new File(getBasedir(), ALREADY_MINIFIED_LOCATION + "/out/app.min.js"),
+                Charset.defaultCharset()).startsWith("var a0=0,a1=1,"));
+        File json = new File(getBasedir(), ALREADY_MINIFIED_LOCATION + "/report/uglify-report.json");
+        assertTrue(FileUtils.readFileToString(json, Charset.defaultCharset()).contains("\"alreadyMinified\":1,"));
+    }
+
+    /**
+     * Tests that a file taking longer than the timeout is copied unminified, or fails the build with the fail policy.
+     *
+     * @throws Exception
+     */
+    public void testFileTimeout() throws Exception {
+
+        StringBuilder readable = new StringBuilder();
+        for (int i = 0; readable.length() < 200000; i++) {
+            readable.append("function f").append(i).append("(value) {\n    return value + ").append(i).append(";\n}\n");
+        }
+        File source = new File(getBasedir(), TIMEOUT_LOCATION + "/src/slow.js");
+        FileUtils.write(source, readable, Charset.defaultCharset());
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION24);
+
+        UglifyMojo mojo = new UglifyMojo();
+        mojo = (UglifyMojo) configureMojo(
+                mojo, extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test File Timeout");
+
+        mojo.execute();
+
+        File output = new File(getBasedir(), TIMEOUT_LOCATION + "/out/slow.min.js");
+        assertEquals(readable.toString(), FileUtils.readFileToString(output, Charset.defaultCharset()));
+        File json = new File(getBasedir(), TIMEOUT_LOCATION + "/report/uglify-report.json");
+        assertTrue(FileUtils.readFileToString(json, Charset.defaultCharset()).contains("\"timedOut\":1,"));
+        File bundle = new File(getBasedir(), TIMEOUT_LOCATION + "/out/slow-bundle.min.js");
+        assertEquals(readable + "\n;\n", FileUtils.readFileToString(bundle, Charset.defaultCharset()));
+
+        // the timeouts of the file and of the bundle are both reported
+        setVariableValueToObject(mojo, "fileTimeoutPolicy", "fail");
+        try {
+            mojo.execute();
+            fail("The file timeout should fail the build.");
+        } catch (MojoExecutionException e) {
+            assertTrue(e.getMessage().startsWith("2 file(s) could not be uglified"));
+        }
+    }
+
+    /**
+     * Tests that the presets and the explicit UglifyJS options apply, and that an unknown preset fails the build.
+     *
+     * @throws Exception
+     */
+    public void testJsOptions() throws Exception {
+
+        FileUtils.write(new File(getBasedir(), JS_OPTIONS_LOCATION + "/src/app.js"),
+                "function unused() {\n    return 1;\n}\n"
+                        + "function twice(value) {\n    console.log(value);\n    return value * 2;\n}\n"
+                        + "trace(\"start\");\n"
+                        + "window.result = twice(window.input);\n", Charset.defaultCharset());
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION25);
+
+        UglifyMojo mojo = new UglifyMojo();
+        mojo = (UglifyMojo) configureMojo(
+                mojo, extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test JS Options");
+
+        mojo.execute();
+
+        File output = new File(getBasedir(), JS_OPTIONS_LOCATION + "/out/app.min.js");
+        String max = FileUtils.readFileToString(output, Charset.defaultCharset());
+        assertFalse(max.contains("unused"));
+        assertFalse(max.contains("console"));
+        assertFalse(max.contains("trace"));
+        File json = new File(getBasedir(), JS_OPTIONS_LOCATION + "/report/uglify-report.json");
+        assertTrue(FileUtils.readFileToString(json, Charset.defaultCharset()).contains("\"jsPreset\":\"max\","));
+
+        // the fast preset neither mangles nor reduces the variables, the explicit options still apply
+        JsOptions jsOptions = (JsOptions) getVariableValueFromObject(mojo, "jsOptions");
+        jsOptions.setPreset("fast");
+        mojo.execute();
+        String fast = FileUtils.readFileToString(output, Charset.defaultCharset());
+        assertTrue(fast.contains("function twice(value){return 2*value}"));
+        assertFalse(fast.contains("console"));
+
+        jsOptions.setPreset("smallest");
+        try {
+            mojo.execute();
+            fail("An unknown preset should fail the build");
+        } catch (MojoExecutionException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Tests that sources minified in batches give the same outputs as one by one, despite a broken source.
+     *
+     * @throws Exception
+     */
+    public void testBatch() throws Exception {
+
+        File directory = new File(getBasedir(), BATCH_LOCATION + "/src");
+        for (int i = 0; i < 30; i++) {
+            FileUtils.write(new File(directory, "module" + i + ".js"), "function module" + i + "(first, second) {\n"
+                    + "    var total = first + second;\n    return total * " + i + ";\n}\n", Charset.defaultCharset());
+            FileUtils.write(new File(directory, "style" + i + ".css"), ".style" + i + " {\n    color: #ff0000;\n"
+                    + "    margin: 0px 0px 0px 0px;\n}\n", Charset.defaultCharset());
+        }
+        FileUtils.write(new File(directory, "broken.js"), "var = ;\n", Charset.defaultCharset());
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION26);
+
+        UglifyMojo mojo = new UglifyMojo();
+        mojo = (UglifyMojo) configureMojo(
+                mojo, extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test Batch");
+
+        try {
+            mojo.execute();
+            fail("The broken source should fail the build");
+        } catch (MojoExecutionException e) {
+            // expected, the other sources of its batch are minified
+        }
+        File output = new File(getBasedir(), BATCH_LOCATION + "/out");
+        assertFalse(new File(output, "broken.min.js").exists());
+        Map<String, String> batched = new HashMap<>();
+        for (int i = 0; i < 30; i++) {
+            batched.put("module" + i, FileUtils.readFileToString(new File(output, "module" + i + ".min.js"),
+                    Charset.defaultCharset()));
+            batched.put("style" + i, FileUtils.readFileToString(new File(output, "style" + i + ".min.css"),
+                    Charset.defaultCharset()));
+        }
+        assertEquals("function module7(n,u){return 7*(n+u)}", batched.get("module7"));
+        assertEquals(".style7{color:red;margin:0}", batched.get("style7"));
+
+        // the same outputs as minified one by one
+        FileUtils.deleteDirectory(output);
+        setVariableValueToObject(mojo, "batchSize", 0);
+        try {
+            mojo.execute();
+            fail("The broken source should fail the build");
+        } catch (MojoExecutionException e) {
+            // expected, as in a batch
+        }
+        for (Map.Entry<String, String> entry : batched.entrySet()) {
+            String extension = entry.getKey().startsWith("module") ? ".min.js" : ".min.css";
+            assertEquals(entry.getValue(), FileUtils.readFileToString(
+                    new File(output, entry.getKey() + extension), Charset.defaultCharset()));
+        }
+    }
+
+    /**
+     * tests that the sources and bundles with errors are reported with their position, and the others minified
+     *
+     * @throws Exception
+     */
+    public void testFailOnErrorContinue() throws Exception {
+
+        File directory = new File(getBasedir(), ERRORS_LOCATION + "/src");
+        FileUtils.write(new File(directory, "valid.js"), "function valid(first) {\n    return first + 1;\n}\n",
+                Charset.defaultCharset());
+        FileUtils.write(new File(directory, "valid.css"), ".valid {\n    color: #ff0000;\n}\n",
+                Charset.defaultCharset());
+        FileUtils.write(new File(directory, "broken.js"), "var first = 1;\nvar = ;\n", Charset.defaultCharset());
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION27);
+
+        UglifyMojo mojo = new UglifyMojo();
+        mojo = (UglifyMojo) configureMojo(
+                mojo, extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test Fail On Error Continue");
+
+        mojo.execute();
+
+        File output = new File(getBasedir(), ERRORS_LOCATION + "/out");
+        assertEquals("function valid(n){return n+1}",
+                FileUtils.readFileToString(new File(output, "valid.min.js"), Charset.defaultCharset()));
+        assertTrue(new File(output, "valid.min.css").exists());
+        assertFalse(new File(output, "broken.min.js").exists());
+        assertFalse(new File(output, "bundle.min.js").exists());
+
+        String errors = FileUtils.readFileToString(new File(getBasedir(), ERRORS_LOCATION + "/report/uglify-errors.json"),
+                Charset.defaultCharset());
+        assertTrue(errors, errors.contains("\"file\":\"broken.js\",\"bundle\":null,\"line\":2,\"column\":4"));
+        assertTrue(errors, errors.contains("\"bundle\":\"bundle.min.js\""));
+
+        // the same errors fail the build once all the files are minified
+        FileUtils.deleteDirectory(output);
+        setVariableValueToObject(mojo, "failOnError", "fail");
+        try {
+            mojo.execute();
+            fail("The broken sources should fail the build");
+        } catch (MojoExecutionException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("broken.js:2:4"));
+        }
+        assertTrue(new File(output, "valid.min.js").exists());
+    }
+
+    /**
+     * tests that the outputs are replaced without temporary files left behind, and not rewritten when they are the same
+     *
+     * @throws Exception
+     */
+    public void testOutputsReplaced() throws Exception {
+
+        File directory = new File(getBasedir(), OUTPUTS_LOCATION + "/src");
+        File source = new File(directory, "app.js");
+        FileUtils.write(source, "function app(first) {\n    return first + 1;\n}\n", Charset.defaultCharset());
+        FileUtils.write(new File(directory, "app.css"), ".app {\n    color: #ff0000;\n}\n",
+                Charset.defaultCharset());
+
+        File testPom = new File(getBasedir(), TEST_POM_LOCATION28);
+
+        UglifyMojo mojo = new UglifyMojo();
+        mojo = (UglifyMojo) configureMojo(
+                mojo, extractPluginConfiguration(ARTIFACT_ID, testPom
+                ));
+
+        assertNotNull(mojo);
+
+        mojo.getLog().info("-- Test Outputs Replaced");
+
+        mojo.execute();
+
+        File output = new File(getBasedir(), OUTPUTS_LOCATION + "/out");
+        File outputFile = new File(output, "app.min.js");
+        assertEquals("function app(n){return n+1}", FileUtils.readFileToString(outputFile, Charset.defaultCharset()));
+
+        // the same output is not rewritten
+        long lastModified = outputFile.lastModified() - 60000;
+        assertTrue(outputFile.setLastModified(lastModified));
+        assertTrue(new File(output, "app.min.css").setLastModified(lastModified));
+        mojo.execute();
+        assertEquals(lastModified, outputFile.lastModified());
+        assertEquals(lastModified, new File(output, "app.min.css").lastModified());
+
+        // a changed output replaces the previous one, shorter or longer
+        FileUtils.write(source, "function app() {\n    return 1;\n}\n", Charset.defaultCharset());
+        mojo.execute();
+        assertEquals("function app(){return 1}", FileUtils.readFileToString(outputFile, Charset.defaultCharset()));
+        assertTrue(outputFile.lastModified() != lastModified);
+
+        FileUtils.write(source, "function app(first, second) {\n    return first + second;\n}\n",
+                Charset.defaultCharset());
+        mojo.execute();
+        assertEquals("function app(n,p){return n+p}",
+                FileUtils.readFileToString(outputFile, Charset.defaultCharset()));
+
+        // no temporary file is left next to the outputs
+        assertEquals(2, output.list().length);
+    }
+
     private void deleteFileIfExists(String location) {
         File file = new File(getBasedir(), location);
         if (file.exists()) {
             file.delete();
         }
     }
-}
 
+    private static void awaitContent(File file, String content) throws Exception {
+        long deadline = System.currentTimeMillis() + 10000;
+        String actual = null;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                actual = FileUtils.readFileToString(file, Charset.defaultCharset());
+            } catch (IOException e) {
+                // not written yet, or deleted while reading it
+                actual = null;
+            }
+            if (content == null ? actual == null : content.equals(actual)) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        assertEquals(content, actual);
+    }
+}
@@ -0,0 +1,3 @@
+function helper(longParameterName) {
+    return longParameterName * 2;
+}
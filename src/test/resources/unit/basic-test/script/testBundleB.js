@@ -0,0 +1 @@
+var result = helper(21);
@@ -0,0 +1,60 @@
+function formatPrice0(amount, currency) {
+    return currency + ' ' + (amount * 1).toFixed(2);
+}
+function formatPrice1(amount, currency) {
+    return currency + ' ' + (amount * 2).toFixed(2);
+}
+function formatPrice2(amount, currency) {
+    return currency + ' ' + (amount * 3).toFixed(2);
+}
+function formatPrice3(amount, currency) {
+    return currency + ' ' + (amount * 4).toFixed(2);
+}
+function formatPrice4(amount, currency) {
+    return currency + ' ' + (amount * 5).toFixed(2);
+}
+function formatPrice5(amount, currency) {
+    return currency + ' ' + (amount * 6).toFixed(2);
+}
+function formatPrice6(amount, currency) {
+    return currency + ' ' + (amount * 7).toFixed(2);
+}
+function formatPrice7(amount, currency) {
+    return currency + ' ' + (amount * 8).toFixed(2);
+}
+function formatPrice8(amount, currency) {
+    return currency + ' ' + (amount * 9).toFixed(2);
+}
+function formatPrice9(amount, currency) {
+    return currency + ' ' + (amount * 10).toFixed(2);
+}
+function formatPrice10(amount, currency) {
+    return currency + ' ' + (amount * 11).toFixed(2);
+}
+function formatPrice11(amount, currency) {
+    return currency + ' ' + (amount * 12).toFixed(2);
+}
+function formatPrice12(amount, currency) {
+    return currency + ' ' + (amount * 13).toFixed(2);
+}
+function formatPrice13(amount, currency) {
+    return currency + ' ' + (amount * 14).toFixed(2);
+}
+function formatPrice14(amount, currency) {
+    return currency + ' ' + (amount * 15).toFixed(2);
+}
+function formatPrice15(amount, currency) {
+    return currency + ' ' + (amount * 16).toFixed(2);
+}
+function formatPrice16(amount, currency) {
+    return currency + ' ' + (amount * 17).toFixed(2);
+}
+function formatPrice17(amount, currency) {
+    return currency + ' ' + (amount * 18).toFixed(2);
+}
+function formatPrice18(amount, currency) {
+    return currency + ' ' + (amount * 19).toFixed(2);
+}
+function formatPrice19(amount, currency) {
+    return currency + ' ' + (amount * 20).toFixed(2);
+}
@@ -0,0 +1,4 @@
+var greet = function (name) {
+    return "Hello " + name;
+};
+//# sourceMappingURL=testSourceMap.js.map